@@ -0,0 +1,88 @@
+package top.newleaf.mongo.benchmark;
+
+import org.bson.*;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.*;
+import top.newleaf.mongo.benchmark.model.*;
+import top.newleaf.mongo.codec.BeanCodec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BeanCodec编解码性能，全部在内存中完成，不需要mongo服务
+ *
+ * @author chengshx
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BeanCodecBenchmark {
+
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    @Param({"flat", "nested", "list"})
+    private String model;
+
+    private Codec<Object> codec;
+    private Object entity;
+    private BsonDocument document;
+    private byte[] bytes;
+    private BasicOutputBuffer buffer;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        switch (model) {
+            case "flat":
+                codec = (Codec) new FlatEntityCodec();
+                entity = FlatEntity.sample(1);
+                break;
+            case "nested":
+                codec = (Codec) new NestedEntityCodec();
+                entity = NestedEntity.sample(1);
+                break;
+            case "list":
+                codec = (Codec) new ListEntityCodec();
+                entity = ListEntity.sample(20);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown model : " + model);
+        }
+        document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), entity, ENCODER_CONTEXT);
+        buffer = new BasicOutputBuffer();
+        codec.encode(new BsonBinaryWriter(buffer), entity, ENCODER_CONTEXT);
+        bytes = buffer.toByteArray();
+    }
+
+    @Benchmark
+    public int encodeBinary() {
+        buffer.truncateToPosition(0);
+        codec.encode(new BsonBinaryWriter(buffer), entity, ENCODER_CONTEXT);
+        return buffer.getPosition();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object encodeRawDocument() {
+        return ((BeanCodec<Object>) codec).toRawDocument(entity);
+    }
+
+    @Benchmark
+    public Object decodeDocument() {
+        return codec.decode(new BsonDocumentReader(document), DECODER_CONTEXT);
+    }
+
+    @Benchmark
+    public Object decodeBinary() {
+        return codec.decode(new BsonBinaryReader(ByteBuffer.wrap(bytes)), DECODER_CONTEXT);
+    }
+}
@@ -0,0 +1,107 @@
+package top.newleaf.mongo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import top.newleaf.mongo.scanner.ClassScanner;
+import top.newleaf.mongo.scanner.IScanAction;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * ClassScanner遍历目录和jar的耗时，class文件为空文件，只统计遍历本身，不加载类
+ *
+ * @author chengshx
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassScannerBenchmark {
+
+    private static final String SCAN_PACKAGE = "bench.scan";
+    private static final int CLASSES_PER_PACKAGE = 100;
+
+    @Param({"100", "1000", "10000"})
+    private int classCount;
+
+    @Param({"dir", "jar"})
+    private String layout;
+
+    private Path root;
+    private ClassLoader loader;
+    private final Set<String> packages = Collections.singleton(SCAN_PACKAGE);
+
+    @Setup
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("mongo-orm-scan");
+        URL url;
+        if ("dir".equals(layout)) {
+            for (int i = 0; i < classCount; i++) {
+                File file = root.resolve(getEntryName(i)).toFile();
+                file.getParentFile().mkdirs();
+                file.createNewFile();
+            }
+            url = root.toUri().toURL();
+        } else {
+            File jar = root.resolve("scan.jar").toFile();
+            try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+                for (int i = 0; i < classCount; i++) {
+                    out.putNextEntry(new JarEntry(getEntryName(i)));
+                    out.closeEntry();
+                }
+            }
+            url = jar.toURI().toURL();
+        }
+        loader = new URLClassLoader(new URL[]{url}, null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public int scan() throws Exception {
+        Thread thread = Thread.currentThread();
+        ClassLoader contextLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(loader);
+        try {
+            CountAction action = new CountAction();
+            ClassScanner.scan(packages, true, action);
+            return action.count.get();
+        } finally {
+            thread.setContextClassLoader(contextLoader);
+        }
+    }
+
+    private static String getEntryName(int index) {
+        return SCAN_PACKAGE.replace('.', '/') + "/p" + (index / CLASSES_PER_PACKAGE) + "/C" + index + ".class";
+    }
+
+    private static class CountAction implements IScanAction {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void doAction(String className) {
+            count.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package top.newleaf.mongo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import top.newleaf.mongo.codec.BeanCodec;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 驼峰字段名转换列名的吞吐量
+ *
+ * @author chengshx
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnNameBenchmark {
+
+    @Param({"id", "userId", "lastLoginIPAddress", "averageResponseTimeInMillis"})
+    private String fieldName;
+
+    @Benchmark
+    public String getColumnName() {
+        return BeanCodec.getColumnName(fieldName);
+    }
+}
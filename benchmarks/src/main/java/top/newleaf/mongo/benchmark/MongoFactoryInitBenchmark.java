@@ -0,0 +1,28 @@
+package top.newleaf.mongo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import top.newleaf.mongo.factory.MongoFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MongoFactory.init冷启动耗时，每次fork一个新的jvm只初始化一次，
+ * 使用类路径下的mongo.xml，只创建客户端，不需要mongo服务
+ *
+ * @author chengshx
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class MongoFactoryInitBenchmark {
+
+    @Benchmark
+    public boolean init() {
+        MongoFactory factory = MongoFactory.getInstance();
+        factory.init(null);
+        return factory.getHasInit();
+    }
+}
@@ -0,0 +1,108 @@
+package top.newleaf.mongo.benchmark.model;
+
+import javax.persistence.Column;
+import javax.persistence.Table;
+import java.util.Date;
+
+/**
+ * 只包含基本类型和字符串的实体
+ *
+ * @author chengshx
+ */
+@Table(name = "bench_flat")
+public class FlatEntity {
+
+    private long userId;
+
+    private int viewCount;
+
+    private double score;
+
+    private boolean enabled;
+
+    private Long version;
+
+    private String title;
+
+    @Column(name = "desc")
+    private String description;
+
+    private Date createTime;
+
+    public static FlatEntity sample(int seed) {
+        FlatEntity entity = new FlatEntity();
+        entity.setUserId(10000000000L + seed);
+        entity.setViewCount(seed * 31);
+        entity.setScore(seed / 7.0);
+        entity.setEnabled(seed % 2 == 0);
+        entity.setVersion((long) seed);
+        entity.setTitle("title-" + seed);
+        entity.setDescription("description of benchmark entity " + seed);
+        entity.setCreateTime(new Date(1500000000000L + seed));
+        return entity;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    public int getViewCount() {
+        return viewCount;
+    }
+
+    public void setViewCount(int viewCount) {
+        this.viewCount = viewCount;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    public boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime) {
+        this.createTime = createTime;
+    }
+}
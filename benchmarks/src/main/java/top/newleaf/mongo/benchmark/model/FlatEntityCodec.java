@@ -0,0 +1,9 @@
+package top.newleaf.mongo.benchmark.model;
+
+import top.newleaf.mongo.codec.BeanCodec;
+
+/**
+ * @author chengshx
+ */
+public class FlatEntityCodec extends BeanCodec<FlatEntity> {
+}
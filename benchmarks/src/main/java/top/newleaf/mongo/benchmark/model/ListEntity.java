@@ -0,0 +1,45 @@
+package top.newleaf.mongo.benchmark.model;
+
+import javax.persistence.Table;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 包含实体List的实体
+ *
+ * @author chengshx
+ */
+@Table(name = "bench_list")
+public class ListEntity {
+
+    private String name;
+
+    private List<FlatEntity> items;
+
+    public static ListEntity sample(int size) {
+        ListEntity entity = new ListEntity();
+        entity.setName("list-" + size);
+        List<FlatEntity> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(FlatEntity.sample(i));
+        }
+        entity.setItems(items);
+        return entity;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<FlatEntity> getItems() {
+        return items;
+    }
+
+    public void setItems(List<FlatEntity> items) {
+        this.items = items;
+    }
+}
@@ -0,0 +1,50 @@
+package top.newleaf.mongo.benchmark.model;
+
+import javax.persistence.Table;
+
+/**
+ * 包含嵌套实体的实体
+ *
+ * @author chengshx
+ */
+@Table(name = "bench_nested")
+public class NestedEntity {
+
+    private String name;
+
+    private FlatEntity detail;
+
+    private FlatEntity extra;
+
+    public static NestedEntity sample(int seed) {
+        NestedEntity entity = new NestedEntity();
+        entity.setName("nested-" + seed);
+        entity.setDetail(FlatEntity.sample(seed));
+        entity.setExtra(FlatEntity.sample(seed + 1));
+        return entity;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public FlatEntity getDetail() {
+        return detail;
+    }
+
+    public void setDetail(FlatEntity detail) {
+        this.detail = detail;
+    }
+
+    public FlatEntity getExtra() {
+        return extra;
+    }
+
+    public void setExtra(FlatEntity extra) {
+        this.extra = extra;
+    }
+}
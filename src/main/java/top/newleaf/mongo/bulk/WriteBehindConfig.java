@@ -0,0 +1,88 @@
+package top.newleaf.mongo.bulk;
+
+/**
+ * 异步批量写入配置
+ *
+ * @author chengshx
+ */
+public class WriteBehindConfig {
+
+    /**
+     * 队列容量，队列满时写入方等待
+     */
+    private int queueCapacity = 10000;
+    /**
+     * 每批最多的写操作数，队列中达到该数量时立即刷新
+     */
+    private int batchSize = 1000;
+    /**
+     * 定时刷新间隔，单位毫秒
+     */
+    private long flushInterval = 1000;
+    /**
+     * 队列满时的最长等待时间，单位毫秒，超时抛出RejectedExecutionException，小于等于0时一直等待
+     */
+    private long offerTimeout = 0;
+    /**
+     * 是否按顺序写入，默认无序写入，同一批次内的操作可能乱序执行
+     */
+    private boolean ordered = false;
+    /**
+     * 进程退出时是否刷新剩余的写操作
+     */
+    private boolean flushOnShutdown = true;
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public long getOfferTimeout() {
+        return offerTimeout;
+    }
+
+    public void setOfferTimeout(long offerTimeout) {
+        this.offerTimeout = offerTimeout;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    public boolean isFlushOnShutdown() {
+        return flushOnShutdown;
+    }
+
+    public void setFlushOnShutdown(boolean flushOnShutdown) {
+        this.flushOnShutdown = flushOnShutdown;
+    }
+
+    @Override
+    public String toString() {
+        return "{\"queueCapacity\":" + queueCapacity + ", \"batchSize\":" + batchSize + ", \"flushInterval\":" + flushInterval
+                + ", \"offerTimeout\":" + offerTimeout + ", \"ordered\":" + ordered + ", \"flushOnShutdown\":" + flushOnShutdown + '}';
+    }
+}
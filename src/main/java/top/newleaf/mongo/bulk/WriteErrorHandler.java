@@ -0,0 +1,22 @@
+package top.newleaf.mongo.bulk;
+
+import com.mongodb.client.model.WriteModel;
+
+import java.util.List;
+
+/**
+ * 异步批量写入失败时的回调，在刷新线程中调用
+ *
+ * @author chengshx
+ */
+@FunctionalInterface
+public interface WriteErrorHandler<T> {
+
+    /**
+     * 批量写入失败
+     *
+     * @param batch 本批次的全部写操作，为加入队列时的原写操作，实体可能已被修改；MongoBulkWriteException中的index对应此列表的下标
+     * @param e     写入异常，部分失败时为MongoBulkWriteException
+     */
+    void onError(List<WriteModel<T>> batch, Exception e);
+}
@@ -0,0 +1,49 @@
+package top.newleaf.mongo.cache;
+
+/**
+ * 实体缓存配置
+ *
+ * @author chengshx
+ */
+public class CacheConfig {
+
+    private int maxSize = 10000;
+
+    /**
+     * 存活时间，单位秒
+     */
+    private long ttl = 300;
+
+    public CacheConfig() {
+    }
+
+    public CacheConfig(int maxSize, long ttl) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+    }
+
+    public static CacheConfig of(Cached cached) {
+        return new CacheConfig(cached.maxSize(), cached.ttl());
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    @Override
+    public String toString() {
+        return "{\"maxSize\":" + maxSize + ", \"ttl\":" + ttl + '}';
+    }
+}
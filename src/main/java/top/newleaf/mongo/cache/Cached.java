@@ -0,0 +1,24 @@
+package top.newleaf.mongo.cache;
+
+import java.lang.annotation.*;
+
+/**
+ * 开启实体按id的二级缓存，mongo.xml中的配置优先
+ *
+ * @author chengshx
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cached {
+
+    /**
+     * 最多缓存的实体数
+     */
+    int maxSize() default 10000;
+
+    /**
+     * 写入缓存后的存活时间，单位秒
+     */
+    long ttl() default 300;
+}
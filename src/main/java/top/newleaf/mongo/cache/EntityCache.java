@@ -0,0 +1,212 @@
+package top.newleaf.mongo.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 容量和存活时间有界的并发缓存，按key分段加锁，段内按访问顺序淘汰最久未使用的条目
+ *
+ * @author chengshx
+ */
+public class EntityCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    /**
+     * 每次失效加一，查询数据库期间发生过失效时不写入缓存，避免写回旧值
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @param maxSize 最多缓存的条目数
+     * @param ttl     写入后的存活时间
+     * @param unit    存活时间单位
+     */
+    public EntityCache(int maxSize, long ttl, TimeUnit unit) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize必须大于0 : " + maxSize);
+        }
+        int count = Math.min(MAX_SEGMENTS, maxSize);
+        int segmentSize = (maxSize + count - 1) / count;
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(segmentSize, evictions);
+        }
+        ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * 获取缓存，过期的条目直接移除
+     *
+     * @param key
+     * @return 不存在或已过期时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            CacheEntry entry = segment.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.createTime < ttlNanos) {
+                    hits.increment();
+                    return (V) entry.value;
+                }
+                segment.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 查询数据库前获取版本，写入缓存时传入
+     *
+     * @return
+     */
+    public long stamp() {
+        return version.get();
+    }
+
+    /**
+     * 写入缓存，stamp之后发生过失效时放弃写入
+     *
+     * @param key
+     * @param value
+     * @param stamp
+     * @return 是否写入
+     */
+    public boolean put(K key, V value, long stamp) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            if (version.get() != stamp) {
+                return false;
+            }
+            segment.put(key, new CacheEntry(value, System.nanoTime()));
+            return true;
+        }
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param key
+     * @param value
+     */
+    public void put(K key, V value) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, new CacheEntry(value, System.nanoTime()));
+        }
+    }
+
+    /**
+     * 使缓存失效
+     *
+     * @param key
+     */
+    public void invalidate(K key) {
+        version.incrementAndGet();
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        version.incrementAndGet();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * 当前条目数，包含尚未清理的过期条目
+     *
+     * @return
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 因容量或过期被淘汰的条目数
+     *
+     * @return
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private Segment segmentFor(Object key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[(hash & Integer.MAX_VALUE) % segments.length];
+    }
+
+    @Override
+    public String toString() {
+        return "EntityCache{size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + '}';
+    }
+
+    private static class CacheEntry {
+
+        private final Object value;
+        private final long createTime;
+
+        CacheEntry(Object value, long createTime) {
+            this.value = value;
+            this.createTime = createTime;
+        }
+    }
+
+    private static class Segment extends LinkedHashMap<Object, CacheEntry> {
+
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+        private final LongAdder evictions;
+
+        Segment(int maxSize, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, CacheEntry> eldest) {
+            if (size() > maxSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -1,79 +1,288 @@
 package top.newleaf.mongo.codec;
 
-import com.mongodb.BasicDBList;
-import com.mongodb.BasicDBObject;
-import org.bson.BsonReader;
-import org.bson.BsonValue;
-import org.bson.BsonWriter;
-import org.bson.Document;
+import com.mongodb.MongoClient;
+import org.bson.*;
 import org.bson.codecs.*;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.io.BsonOutput;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import top.newleaf.mongo.metrics.CodecStats;
+import top.newleaf.mongo.metrics.MongoMetrics;
 
-import javax.persistence.Column;
-import javax.persistence.Transient;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
+ * 直接在BsonReader/BsonWriter和实体之间读写，不经过中间Document
+ *
  * @author chengshx
  */
 public class BeanCodec<T> implements CollectibleCodec<T> {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(BeanCodec.class);
     private static final String ID_FIELD = "_id";
+    private static final int OBJECT_ID_LENGTH = 12;
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+    /**
+     * 超过此大小的线程缓冲区用完即丢弃，避免长期占用内存
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 1 << 20;
+    /**
+     * 编码为RawBsonDocument时复用的线程缓冲区
+     */
+    private static final ThreadLocal<BasicOutputBuffer> BUFFERS = ThreadLocal.withInitial(BasicOutputBuffer::new);
 
-    private final Codec<Document> documentCodec;
+    private final CodecRegistry codecRegistry;
+    private final BsonTypeCodecMap bsonTypeCodecMap;
+    /**
+     * 只解码的列，null表示全部列
+     */
+    private final Set<String> projection;
     private Class<T> tClass;
+    private BeanModel<T> model;
 
     public BeanCodec() {
-        documentCodec = new DocumentCodec();
+        this(MongoClient.getDefaultCodecRegistry());
+    }
+
+    /**
+     * @param codecRegistry 非自定义实体字段使用的codec
+     */
+    public BeanCodec(CodecRegistry codecRegistry) {
+        this.codecRegistry = codecRegistry;
+        this.bsonTypeCodecMap = new BsonTypeCodecMap(new BsonTypeClassMap(), codecRegistry);
+        this.projection = null;
+    }
+
+    /**
+     * 直接指定实体类型，无需继承传入泛型
+     *
+     * @param tClass        实体类型
+     * @param codecRegistry 非自定义实体字段使用的codec
+     */
+    public BeanCodec(Class<T> tClass, CodecRegistry codecRegistry) {
+        this(codecRegistry);
+        this.tClass = tClass;
+    }
+
+    private BeanCodec(BeanCodec<T> codec, Set<String> projection) {
+        this.codecRegistry = codec.codecRegistry;
+        this.bsonTypeCodecMap = codec.bsonTypeCodecMap;
+        this.tClass = codec.getTClass();
+        this.model = codec.getModel();
+        this.projection = projection;
+    }
+
+    /**
+     * 创建只解码指定字段的codec，其余列在bson层面直接跳过，编码不受影响
+     *
+     * @param fields 字段名或列名，只支持顶层字段
+     * @return
+     */
+    public BeanCodec<T> withProjection(Collection<String> fields) {
+        return new BeanCodec<>(this, new HashSet<>(getColumnNames(fields)));
+    }
+
+    /**
+     * 将字段名转换为列名
+     *
+     * @param fields 字段名或列名
+     * @return
+     */
+    public List<String> getColumnNames(Collection<String> fields) {
+        BeanModel<T> model = getModel();
+        List<String> columns = new ArrayList<>(fields.size());
+        for (String field : fields) {
+            PropertyModel property = model.getPropertyByName(field);
+            if (property == null) {
+                property = model.getProperty(field);
+            }
+            if (property == null) {
+                throw new IllegalArgumentException(getTClass().getName() + "不存在字段 : " + field);
+            }
+            columns.add(property.getColumnName());
+        }
+        return columns;
     }
 
+    /**
+     * _id为空时在客户端生成，支持ObjectId、String和byte[]类型的id，数值id需自行赋值
+     *
+     * @param t
+     * @return
+     */
     @Override
     public T generateIdIfAbsentFromDocument(T t) {
+        PropertyModel idProperty = getModel().getIdProperty();
+        if (idProperty != null && !documentHasId(t)) {
+            Object id = generateId(idProperty.getType());
+            if (id != null) {
+                idProperty.set(t, id);
+            }
+        }
         return t;
     }
 
     @Override
     public boolean documentHasId(T t) {
-        return false;
+        PropertyModel idProperty = getModel().getIdProperty();
+        return idProperty != null && (idProperty.isPrimitive() || idProperty.get(t) != null);
     }
 
     @Override
     public BsonValue getDocumentId(T t) {
-        return null;
+        if (!documentHasId(t)) {
+            throw new IllegalStateException(getTClass().getName() + "的_id为空");
+        }
+        return toIdValue(getModel().getIdProperty().get(t));
+    }
+
+    /**
+     * 将id字段的值转换为写入_id的bson值，与encode的转换一致
+     *
+     * @param id id字段类型的值
+     * @return
+     */
+    public BsonValue toIdValue(Object id) {
+        PropertyModel idProperty = getModel().getIdProperty();
+        if (idProperty == null) {
+            throw new IllegalStateException(getTClass().getName() + "未映射_id");
+        }
+        BsonDocument document = new BsonDocument();
+        BsonDocumentWriter writer = new BsonDocumentWriter(document);
+        writer.writeStartDocument();
+        writer.writeName(ID_FIELD);
+        writeId(writer, idProperty, id, ENCODER_CONTEXT);
+        writer.writeEndDocument();
+        return document.get(ID_FIELD);
     }
 
     @Override
     public T decode(BsonReader bsonReader, DecoderContext decoderContext) {
-        Document document = documentCodec.decode(bsonReader, decoderContext);
-        Class<T> tClass = getTClass();
+        CodecStats stats = MongoMetrics.getCodecStats(getTClass());
+        if (stats == null) {
+            return track(readDocument(bsonReader, decoderContext));
+        }
+        long start = System.nanoTime();
+        long position = getPosition(bsonReader);
+        T t;
         try {
-            T t = tClass.newInstance();
-            Field[] fields = tClass.getDeclaredFields();
-            for (Field field : fields) {
-                setField(t, document, field);
+            t = readDocument(bsonReader, decoderContext);
+        } catch (RuntimeException e) {
+            stats.recordFailure();
+            throw e;
+        }
+        stats.recordDecode(System.nanoTime() - start, getPosition(bsonReader) - position);
+        return track(t);
+    }
+
+    /**
+     * 读取整个文档创建实体，编译期生成的codec覆盖此方法
+     *
+     * @param reader
+     * @param decoderContext
+     * @return
+     */
+    protected T readDocument(BsonReader reader, DecoderContext decoderContext) {
+        return readBean(reader, getModel(), projection, decoderContext);
+    }
+
+    /**
+     * 为可跟踪的实体保存编码快照，解码完成和保存成功后调用，自定义decode需在返回前调用
+     *
+     * @param t
+     * @return
+     */
+    public T track(T t) {
+        if (t instanceof Trackable) {
+            ((Trackable) t).setSnapshot(toRaw(t));
+        }
+        return t;
+    }
+
+    /**
+     * 比较实体当前值与快照，生成只包含修改列的更新
+     *
+     * @param t 解码得到的可跟踪实体
+     * @return 无修改时返回空文档
+     */
+    public BsonDocument getUpdate(T t) {
+        RawBsonDocument snapshot = t instanceof Trackable ? ((Trackable) t).getSnapshot() : null;
+        if (snapshot == null) {
+            throw new IllegalStateException(getTClass().getName() + "实体未跟踪修改，需实现Trackable并通过codec解码");
+        }
+        return DocumentDiff.diff(snapshot, toRaw(t));
+    }
+
+    /**
+     * 将实体编码为RawBsonDocument，在线程缓冲区中编码后复制为恰好大小的数组
+     * <p>
+     * 批量插入时先在调用线程编码，驱动发送时只复制字节
+     *
+     * @param t
+     * @return
+     */
+    public RawBsonDocument toRawDocument(T t) {
+        return toRaw(t, true);
+    }
+
+    /**
+     * 快照直接调用writeDocument，不计入编码统计
+     *
+     * @param t
+     * @return
+     */
+    private RawBsonDocument toRaw(T t) {
+        return toRaw(t, false);
+    }
+
+    private RawBsonDocument toRaw(T t, boolean record) {
+        BasicOutputBuffer buffer = BUFFERS.get();
+        buffer.truncateToPosition(0);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            if (record) {
+                encode(writer, t, ENCODER_CONTEXT);
+            } else {
+                writeDocument(writer, t, ENCODER_CONTEXT);
+            }
+            return new RawBsonDocument(Arrays.copyOf(buffer.getInternalBuffer(), buffer.getPosition()));
+        } finally {
+            if (buffer.getInternalBuffer().length > MAX_POOLED_BUFFER_SIZE) {
+                BUFFERS.remove();
             }
-            return t;
-        } catch (Exception e) {
-            LOGGER.error("", e);
         }
-        return null;
     }
 
     @Override
     public void encode(BsonWriter bsonWriter, T t, EncoderContext encoderContext) {
-        Document document = new Document();
-        Field[] fields = tClass.getDeclaredFields();
-        for (Field field : fields) {
-            setColumn(t, document, field);
+        CodecStats stats = MongoMetrics.getCodecStats(getTClass());
+        if (stats == null) {
+            writeDocument(bsonWriter, t, encoderContext);
+            return;
+        }
+        long start = System.nanoTime();
+        long position = getPosition(bsonWriter);
+        try {
+            writeDocument(bsonWriter, t, encoderContext);
+        } catch (RuntimeException e) {
+            stats.recordFailure();
+            throw e;
         }
-        documentCodec.encode(bsonWriter, document, encoderContext);
+        stats.recordEncode(System.nanoTime() - start, getPosition(bsonWriter) - position);
+    }
+
+    /**
+     * 将实体写为整个文档，编译期生成的codec覆盖此方法
+     *
+     * @param writer
+     * @param t
+     * @param encoderContext
+     */
+    protected void writeDocument(BsonWriter writer, T t, EncoderContext encoderContext) {
+        writeBean(writer, getModel(), t, encoderContext);
     }
 
     @Override
@@ -81,178 +290,579 @@ public class BeanCodec<T> implements CollectibleCodec<T> {
         return getTClass();
     }
 
+    private void writeBean(BsonWriter writer, BeanModel<?> model, Object bean, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        for (PropertyModel property : model.getProperties()) {
+            writeColumn(writer, bean, property, encoderContext);
+        }
+        writer.writeEndDocument();
+    }
+
+    private <E> E readBean(BsonReader reader, BeanModel<E> model, Set<String> columns, DecoderContext decoderContext) {
+        E bean = model.newInstance();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            PropertyModel property = columns == null || columns.contains(name) ? model.getProperty(name) : null;
+            if (property == null) {
+                // 未映射或不需要的列直接跳过
+                reader.skipValue();
+            } else {
+                readField(reader, bean, property, decoderContext);
+            }
+        }
+        reader.readEndDocument();
+        return bean;
+    }
+
     /**
-     * 填充document的值
+     * 写入列的值
      *
-     * @param obj
-     * @param document
-     * @param field
+     * @param writer
+     * @param bean
+     * @param property
+     * @param encoderContext
      */
-    private void setColumn(Object obj, Document document, Field field) {
+    protected void writeColumn(BsonWriter writer, Object bean, PropertyModel property, EncoderContext encoderContext) {
+        String columnName = property.getColumnName();
+        if (property.isPrimitive()) {
+            writePrimitive(writer, bean, property);
+            return;
+        }
+        Object value;
         try {
-            field.setAccessible(true);
-            // 非transient
-            if (!field.isAnnotationPresent(Transient.class)) {
-                // 自定义columnName
-                String columnName;
-                Column column = field.getAnnotation(Column.class);
-                if (column != null) {
-                    columnName = column.name();
-                } else {
-                    columnName = getColumnName(field.getName());
-                }
-                if (obj == null) {
-                    document.put(columnName, null);
-                } else {
-                    // get方法获取字段值
-                    String methodGetName = getMethodGetName(field);
-                    Method method = obj.getClass().getMethod(methodGetName);
-                    Object value = method.invoke(obj);
-                    // 处理自定义泛型
-                    value = setGenericColumn(field, value);
-                    if (!ID_FIELD.equals(columnName)) {
-                        document.put(columnName, value);
-                    }
-                }
-            }
+            // get方法获取字段值
+            value = property.get(bean);
         } catch (Exception e) {
             LOGGER.error("", e);
+            recordFailure();
+            return;
         }
+        if (ID_FIELD.equals(columnName)) {
+            // _id为空时交给服务端生成
+            if (value != null) {
+                writer.writeName(columnName);
+                writeId(writer, property, value, encoderContext);
+            }
+            return;
+        }
+        BsonOutput output = getRawOutput(writer, property);
+        if (output != null && writeRawValue(output, property, value)) {
+            return;
+        }
+        writer.writeName(columnName);
+        writeValue(writer, property, value, encoderContext);
     }
 
     /**
-     * 填充实体的值
+     * 二进制writer直接写入预先编码的列名和值，跳过writer的名称编码和状态检查
+     * <p>
+     * 只在writeBean写入文档的列时使用，此时writer一定处于等待列名的状态
      *
-     * @param obj
-     * @param document
-     * @param field
+     * @param writer
+     * @param property
+     * @return 不能直接写入时返回null
      */
-    private void setField(Object obj, Document document, Field field) {
-        try {
-            field.setAccessible(true);
-            // 非transient
-            if (!field.isAnnotationPresent(Transient.class)) {
-                // 是否自定义column
-                String columnName;
-                Column column = field.getAnnotation(Column.class);
-                if (column != null) {
-                    columnName = column.name();
-                } else {
-                    columnName = getColumnName(field.getName());
-                }
-                // 获取列的值
-                Object value;
-                if (ID_FIELD.equals(columnName)) {
-                    value = document.getObjectId(ID_FIELD).toString();
-                } else {
-                    Object defaultVal = field.get(obj);
-                    value = document.get(columnName);
-                    if (value == null && defaultVal != null) {
-                        value = defaultVal;
-                    }
+    private static BsonOutput getRawOutput(BsonWriter writer, PropertyModel property) {
+        if (property.getEncodedName() == null || writer.getClass() != BsonBinaryWriter.class) {
+            return null;
+        }
+        return ((BsonBinaryWriter) writer).getBsonOutput();
+    }
+
+    private static void writeRawName(BsonOutput output, BsonType bsonType, PropertyModel property) {
+        output.writeByte(bsonType.getValue());
+        output.writeBytes(property.getEncodedName());
+    }
+
+    /**
+     * 直接写入null及常用的标量值
+     *
+     * @return 其余类型返回false，交给writeValue处理
+     */
+    private static boolean writeRawValue(BsonOutput output, PropertyModel property, Object value) {
+        if (value == null) {
+            writeRawName(output, BsonType.NULL, property);
+            return true;
+        }
+        // Lazy字段的valueType描述Lazy中的值，交给writeValue解包
+        if (property.getKind() != PropertyModel.Kind.VALUE || property.isLazy() || property.isCompressed()) {
+            return false;
+        }
+        switch (property.getValueType()) {
+            case INT:
+                writeRawName(output, BsonType.INT32, property);
+                output.writeInt32((Integer) value);
+                return true;
+            case LONG:
+                writeRawName(output, BsonType.INT64, property);
+                output.writeInt64((Long) value);
+                return true;
+            case DOUBLE:
+                writeRawName(output, BsonType.DOUBLE, property);
+                output.writeDouble((Double) value);
+                return true;
+            case BOOLEAN:
+                writeRawName(output, BsonType.BOOLEAN, property);
+                output.writeByte((Boolean) value ? 1 : 0);
+                return true;
+            case DATE:
+                writeRawName(output, BsonType.DATE_TIME, property);
+                output.writeInt64(((Date) value).getTime());
+                return true;
+            default:
+                if (value instanceof String) {
+                    writeRawName(output, BsonType.STRING, property);
+                    output.writeString((String) value);
+                    return true;
                 }
-                // 泛型字段
-                value = setGenericField(field, value);
+                return false;
+        }
+    }
+
+    /**
+     * 合法的ObjectId字符串及12字节的byte[]按ObjectId写入，与读取时的转换对应
+     *
+     * @param writer
+     * @param property
+     * @param value
+     * @param encoderContext
+     */
+    private void writeId(BsonWriter writer, PropertyModel property, Object value, EncoderContext encoderContext) {
+        if (value instanceof String && ObjectId.isValid((String) value)) {
+            writer.writeObjectId(new ObjectId((String) value));
+        } else if (value instanceof byte[] && ((byte[]) value).length == OBJECT_ID_LENGTH) {
+            writer.writeObjectId(new ObjectId((byte[]) value));
+        } else {
+            writeValue(writer, property, value, encoderContext);
+        }
+    }
+
+    private static Object generateId(Class<?> type) {
+        if (type == ObjectId.class) {
+            return new ObjectId();
+        } else if (type == String.class) {
+            return new ObjectId().toHexString();
+        } else if (type == byte[].class) {
+            return new ObjectId().toByteArray();
+        }
+        return null;
+    }
+
+    /**
+     * 读取列的值填充实体
+     *
+     * @param reader
+     * @param bean
+     * @param property
+     * @param decoderContext
+     */
+    protected void readField(BsonReader reader, Object bean, PropertyModel property, DecoderContext decoderContext) {
+        if (property.isPrimitive()) {
+            readPrimitive(reader, bean, property);
+            return;
+        }
+        Object value = property.isLazy() ? readLazy(reader, property) : readValue(reader, property, decoderContext);
+        // 列为null时保留字段默认值
+        if (value != null) {
+            try {
                 // set方法设置字段值
-                String setMethodName = getMethodSetName(field);
-                Class<?> fieldClass = field.getType();
-                Method method = obj.getClass().getMethod(setMethodName, fieldClass);
-                method.invoke(obj, value);
+                property.set(bean, value);
+            } catch (Exception e) {
+                LOGGER.error("", e);
+                recordFailure();
+            }
+        }
+    }
+
+    /**
+     * 基本类型字段直接使用类型化的方法写入，不经过装箱
+     *
+     * @param writer
+     * @param bean
+     * @param property
+     */
+    private void writePrimitive(BsonWriter writer, Object bean, PropertyModel property) {
+        BsonOutput output = getRawOutput(writer, property);
+        if (output != null) {
+            writeRawPrimitive(output, bean, property);
+            return;
+        }
+        String columnName = property.getColumnName();
+        switch (property.getValueType()) {
+            case INT:
+                writer.writeInt32(columnName, property.getInt(bean));
+                break;
+            case LONG:
+                writer.writeInt64(columnName, property.getLong(bean));
+                break;
+            case DOUBLE:
+                writer.writeDouble(columnName, property.getDouble(bean));
+                break;
+            case BOOLEAN:
+                writer.writeBoolean(columnName, property.getBoolean(bean));
+                break;
+            default:
+                throw new IllegalStateException("非基本类型字段 : " + property);
+        }
+    }
+
+    /**
+     * 先读取字段值再写入列名，读取失败时不会留下不完整的列
+     */
+    private static void writeRawPrimitive(BsonOutput output, Object bean, PropertyModel property) {
+        switch (property.getValueType()) {
+            case INT:
+                int intValue = property.getInt(bean);
+                writeRawName(output, BsonType.INT32, property);
+                output.writeInt32(intValue);
+                break;
+            case LONG:
+                long longValue = property.getLong(bean);
+                writeRawName(output, BsonType.INT64, property);
+                output.writeInt64(longValue);
+                break;
+            case DOUBLE:
+                double doubleValue = property.getDouble(bean);
+                writeRawName(output, BsonType.DOUBLE, property);
+                output.writeDouble(doubleValue);
+                break;
+            case BOOLEAN:
+                boolean booleanValue = property.getBoolean(bean);
+                writeRawName(output, BsonType.BOOLEAN, property);
+                output.writeByte(booleanValue ? 1 : 0);
+                break;
+            default:
+                throw new IllegalStateException("非基本类型字段 : " + property);
+        }
+    }
+
+    /**
+     * 基本类型字段直接使用类型化的方法读取，数值类型之间自动转换
+     *
+     * @param reader
+     * @param bean
+     * @param property
+     */
+    private void readPrimitive(BsonReader reader, Object bean, PropertyModel property) {
+        BsonType bsonType = reader.getCurrentBsonType();
+        if (bsonType == BsonType.NULL) {
+            reader.readNull();
+            return;
+        }
+        boolean matched = property.getValueType() == PropertyModel.ValueType.BOOLEAN ? bsonType == BsonType.BOOLEAN : isNumber(bsonType);
+        if (!matched) {
+            LOGGER.error("列类型与字段不匹配，field = {}, bsonType = {}", property, bsonType);
+            recordFailure();
+            reader.skipValue();
+            return;
+        }
+        try {
+            switch (property.getValueType()) {
+                case INT:
+                    property.setInt(bean, readInt(reader));
+                    break;
+                case LONG:
+                    property.setLong(bean, readLong(reader));
+                    break;
+                case DOUBLE:
+                    property.setDouble(bean, readDouble(reader));
+                    break;
+                case BOOLEAN:
+                    property.setBoolean(bean, reader.readBoolean());
+                    break;
+                default:
+                    throw new IllegalStateException("非基本类型字段 : " + property);
             }
         } catch (Exception e) {
             LOGGER.error("", e);
+            recordFailure();
         }
     }
 
-    private Class<T> getTClass() {
-        if (tClass == null) {
-            tClass = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
+    /**
+     * 截取Lazy字段的原始bson，首次访问时再解码
+     *
+     * @param reader
+     * @param property
+     * @return
+     */
+    private Lazy<Object> readLazy(BsonReader reader, PropertyModel property) {
+        if (reader.getCurrentBsonType() == BsonType.NULL) {
+            reader.readNull();
+            return null;
         }
-        return tClass;
+        return new Lazy<>(RawBson.wrap(reader), raw -> {
+            try (BsonBinaryReader lazyReader = RawBson.open(raw)) {
+                return readValue(lazyReader, property, DecoderContext.builder().build());
+            }
+        });
     }
 
-    private Object setGenericColumn(Field field, Object value) {
-        if (value == null) {
-            return value;
+    private void writeValue(BsonWriter writer, PropertyModel property, Object value, EncoderContext encoderContext) {
+        if (value instanceof Lazy) {
+            Lazy<?> lazy = (Lazy<?>) value;
+            if (!lazy.isLoaded()) {
+                // 未访问过的值直接复制原始bson
+                RawBson.pipe(lazy.getRaw(), writer);
+                return;
+            }
+            value = lazy.get();
         }
-        if (field.getType() == List.class) {
+        if (value == null) {
+            writer.writeNull();
+        } else if (property.isCompressed()) {
+            // 超过阈值的String和byte[]压缩后写为二进制
+            FieldCompression.write(writer, property, value);
+        } else if (property.getElementType() != null) {
+            // 数值数组及数值List，@Packed时写为二进制
+            PackedArrays.write(writer, property.getElementType(), value, property.isPacked());
+        } else if (property.getKind() == PropertyModel.Kind.ENTITY_LIST) {
             // 泛型List
-            Class genericType = (Class) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
-            if (isGenericType(genericType)) {
-                List<Document> documents = new ArrayList<>();
-                Field[] fields = genericType.getDeclaredFields();
-                for (Object obj : (List) value) {
-                    Document document = new Document();
-                    for (Field f : fields) {
-                        setColumn(obj, document, f);
-                    }
-                    documents.add(document);
+            BeanModel<?> genericModel = property.getGenericModel();
+            writer.writeStartArray();
+            for (Object obj : (List<?>) value) {
+                if (obj == null) {
+                    writer.writeNull();
+                } else {
+                    writeBean(writer, genericModel, obj, encoderContext);
                 }
-                value = documents;
             }
-        } else if (isGenericType(field.getType())) {
+            writer.writeEndArray();
+        } else if (property.getKind() == PropertyModel.Kind.ENTITY) {
             // 泛型实体
-            Field[] fields = field.getType().getDeclaredFields();
-            Document document = new Document();
-            for (Field f : fields) {
-                setColumn(value, document, f);
+            writeBean(writer, property.getGenericModel(), value, encoderContext);
+        } else {
+            switch (property.getValueType()) {
+                case INT:
+                    writer.writeInt32((Integer) value);
+                    break;
+                case LONG:
+                    writer.writeInt64((Long) value);
+                    break;
+                case DOUBLE:
+                    writer.writeDouble((Double) value);
+                    break;
+                case BOOLEAN:
+                    writer.writeBoolean((Boolean) value);
+                    break;
+                case DATE:
+                    writer.writeDateTime(((Date) value).getTime());
+                    break;
+                default:
+                    writeObject(writer, value, encoderContext);
             }
-            value = document;
         }
-        return value;
     }
 
-    private Object setGenericField(Field field, Object value) {
-        if (value == null) {
+    private Object readValue(BsonReader reader, PropertyModel property, DecoderContext decoderContext) {
+        BsonType bsonType = reader.getCurrentBsonType();
+        if (bsonType == BsonType.NULL) {
+            reader.readNull();
+            return null;
+        }
+        if (bsonType == BsonType.OBJECT_ID) {
+            // 按字段类型转换，ObjectId类型的字段不做转换
+            if (property.getType() == String.class) {
+                return reader.readObjectId().toHexString();
+            } else if (property.getType() == byte[].class) {
+                return reader.readObjectId().toByteArray();
+            }
+        }
+        if (bsonType == BsonType.BINARY && property.isCompressed()) {
+            if (reader.peekBinarySubType() == FieldCompression.SUB_TYPE) {
+                return FieldCompression.read(reader, property);
+            }
+            if (property.getCompressedType() == byte[].class) {
+                return reader.readBinaryData().getData();
+            }
+        }
+        if (bsonType == BsonType.BINARY && property.getType() == byte[].class) {
+            return reader.readBinaryData().getData();
+        }
+        if (property.getElementType() != null && (bsonType == BsonType.BINARY || bsonType == BsonType.ARRAY)) {
+            // 二进制和bson数组都可解码，不要求与@Packed一致
+            Object value = PackedArrays.read(reader, property.getElementType(), property.getType() == List.class);
+            if (value == null) {
+                LOGGER.error("无法识别的二进制数组，field = {}", property);
+                recordFailure();
+            }
             return value;
         }
-        Object object = value;
-        if (field.getType() == List.class) {
+        if (property.getKind() == PropertyModel.Kind.ENTITY_LIST && bsonType == BsonType.ARRAY) {
             // 获取数组泛型实例化递归设置字段值
-            Class genericType = (Class) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
-            if (isGenericType(genericType)) {
-                List genericList = new ArrayList();
-                Field[] fields = genericType.getDeclaredFields();
-                for (Document document : (List<Document>) value) {
-                    try {
-                        Object genericObj = genericType.newInstance();
-                        for (Field genericField : fields) {
-                            setField(genericObj, document, genericField);
-                        }
-                        genericList.add(genericObj);
-                    } catch (Exception e) {
-                        LOGGER.error("初始化List泛型对象失败，filed = {}", field.getName(), e);
-                    }
+            BeanModel<?> genericModel = property.getGenericModel();
+            List<Object> genericList = new ArrayList<>();
+            reader.readStartArray();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                if (reader.getCurrentBsonType() == BsonType.DOCUMENT) {
+                    genericList.add(readBean(reader, genericModel, null, decoderContext));
+                } else {
+                    genericList.add(readObject(reader, decoderContext));
                 }
-                object = genericList;
             }
-        } else if (isGenericType(field.getType())) {
+            reader.readEndArray();
+            return genericList;
+        }
+        if (property.getKind() == PropertyModel.Kind.ENTITY && bsonType == BsonType.DOCUMENT) {
             // 泛型实体递归设置字段
-            try {
-                Field[] fields = field.getType().getDeclaredFields();
-                object = field.getType().newInstance();
-                for (Field f : fields) {
-                    setField(object, (Document) value, f);
+            return readBean(reader, property.getGenericModel(), null, decoderContext);
+        }
+        switch (property.getValueType()) {
+            case INT:
+                if (isNumber(bsonType)) {
+                    return readInt(reader);
                 }
-            } catch (Exception e) {
-                LOGGER.error("", e);
+                break;
+            case LONG:
+                if (isNumber(bsonType)) {
+                    return readLong(reader);
+                }
+                break;
+            case DOUBLE:
+                if (isNumber(bsonType)) {
+                    return readDouble(reader);
+                }
+                break;
+            case BOOLEAN:
+                if (bsonType == BsonType.BOOLEAN) {
+                    return reader.readBoolean();
+                }
+                break;
+            case DATE:
+                if (bsonType == BsonType.DATE_TIME) {
+                    return new Date(reader.readDateTime());
+                }
+                break;
+            default:
+                break;
+        }
+        return readObject(reader, decoderContext);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeObject(BsonWriter writer, Object value, EncoderContext encoderContext) {
+        Codec codec = codecRegistry.get(value.getClass());
+        encoderContext.encodeWithChildContext(codec, writer, value);
+    }
+
+    /**
+     * 按bson类型读取非实体的值，与DocumentCodec的解析结果一致
+     *
+     * @param reader
+     * @param decoderContext
+     * @return
+     */
+    private Object readObject(BsonReader reader, DecoderContext decoderContext) {
+        BsonType bsonType = reader.getCurrentBsonType();
+        if (bsonType == BsonType.NULL) {
+            reader.readNull();
+            return null;
+        }
+        if (bsonType == BsonType.BINARY && reader.peekBinarySize() == 16) {
+            byte subType = reader.peekBinarySubType();
+            if (subType == BsonBinarySubType.UUID_STANDARD.getValue() || subType == BsonBinarySubType.UUID_LEGACY.getValue()) {
+                return codecRegistry.get(UUID.class).decode(reader, decoderContext);
             }
         }
-        return object;
+        return bsonTypeCodecMap.get(bsonType).decode(reader, decoderContext);
+    }
+
+    /**
+     * 字段读写失败计入实体类的编解码统计
+     */
+    protected void recordFailure() {
+        CodecStats stats = MongoMetrics.getCodecStats(getTClass());
+        if (stats != null) {
+            stats.recordFailure();
+        }
     }
 
     /**
-     * 判断是否为自定义类型
+     * 二进制reader/writer的当前位置，用于统计字节数，其余返回0
+     */
+    private static long getPosition(BsonReader reader) {
+        return reader instanceof BsonBinaryReader ? ((BsonBinaryReader) reader).getBsonInput().getPosition() : 0;
+    }
+
+    private static long getPosition(BsonWriter writer) {
+        return writer instanceof BsonBinaryWriter ? ((BsonBinaryWriter) writer).getBsonOutput().getPosition() : 0;
+    }
+
+    protected static boolean isNumber(BsonType bsonType) {
+        return bsonType == BsonType.INT32 || bsonType == BsonType.INT64 || bsonType == BsonType.DOUBLE;
+    }
+
+    protected static int readInt(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return (int) reader.readInt64();
+            default:
+                return (int) reader.readDouble();
+        }
+    }
+
+    protected static long readLong(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            default:
+                return (long) reader.readDouble();
+        }
+    }
+
+    protected static double readDouble(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            default:
+                return reader.readDouble();
+        }
+    }
+
+    /**
+     * 根据列名获取字段映射，不存在时抛出异常
      *
-     * @param clazz
+     * @param columnName
      * @return
      */
-    private boolean isGenericType(Class<?> clazz) {
-        return !clazz.isPrimitive() && !Number.class.isAssignableFrom(clazz) && !String.class.isAssignableFrom(clazz) && !Boolean.class.isAssignableFrom(clazz)
-                && !Map.class.isAssignableFrom(clazz) && !BasicDBObject.class.isAssignableFrom(clazz) && !BasicDBList.class.isAssignableFrom(clazz);
+    protected PropertyModel getProperty(String columnName) {
+        PropertyModel property = getModel().getProperty(columnName);
+        if (property == null) {
+            throw new IllegalArgumentException(getTClass().getName() + "不存在列 : " + columnName);
+        }
+        return property;
+    }
+
+    protected BeanModel<T> getModel() {
+        BeanModel<T> model = this.model;
+        if (model == null) {
+            model = BeanModel.of(getTClass());
+            this.model = model;
+        }
+        return model;
     }
 
-    private String getColumnName(String fieldName) {
+    private Class<T> getTClass() {
+        if (tClass == null) {
+            tClass = (Class<T>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0];
+        }
+        return tClass;
+    }
+
+    /**
+     * 驼峰字段名转换为下划线列名
+     *
+     * @param fieldName
+     * @return
+     */
+    public static String getColumnName(String fieldName) {
         StringBuilder column = new StringBuilder(fieldName);
         int count = 0;
         for (int i = 0; i < fieldName.length(); i++) {
@@ -269,14 +879,4 @@ public class BeanCodec<T> implements CollectibleCodec<T> {
         }
         return column.toString();
     }
-
-    private String getMethodSetName(Field field) {
-        String name = field.getName();
-        return "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
-    }
-
-    private String getMethodGetName(Field field) {
-        String name = field.getName();
-        return "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
-    }
 }
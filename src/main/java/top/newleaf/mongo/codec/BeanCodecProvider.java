@@ -0,0 +1,54 @@
+package top.newleaf.mongo.codec;
+
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.Table;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按需为@Table实体或手动注册的类创建BeanCodec，首次使用时创建并缓存，无需编写codec子类和扫描类路径
+ *
+ * @author chengshx
+ */
+public class BeanCodecProvider implements CodecProvider {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(BeanCodecProvider.class);
+
+    private final ConcurrentHashMap<Class<?>, Codec<?>> codecs = new ConcurrentHashMap<>();
+    private final Set<Class<?>> registered = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 注册未标注@Table的实体，需在该类首次使用前注册，驱动会缓存找不到codec的结果
+     *
+     * @param classes
+     */
+    public void register(Class<?>... classes) {
+        for (Class<?> clazz : classes) {
+            registered.add(clazz);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        Codec<?> codec = codecs.get(clazz);
+        if (codec == null) {
+            if (!registered.contains(clazz) && !clazz.isAnnotationPresent(Table.class)) {
+                return null;
+            }
+            codec = new BeanCodec<>(clazz, registry);
+            Codec<?> exist = codecs.putIfAbsent(clazz, codec);
+            if (exist != null) {
+                codec = exist;
+            } else {
+                LOGGER.info("create codec : {}", clazz.getName());
+            }
+        }
+        return (Codec<T>) codec;
+    }
+}
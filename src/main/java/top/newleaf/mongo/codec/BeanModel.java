@@ -0,0 +1,179 @@
+package top.newleaf.mongo.codec;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Transient;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实体的映射模型，每个class只解析一次，解析结果在线程间共享
+ *
+ * @author chengshx
+ */
+public class BeanModel<T> {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(BeanModel.class);
+    private static final ConcurrentHashMap<Class<?>, BeanModel<?>> MODELS = new ConcurrentHashMap<>();
+    private static final String ID_COLUMN = "_id";
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final List<PropertyModel> properties;
+    private final Map<String, PropertyModel> columns;
+    private final Map<String, PropertyModel> names;
+    private final PropertyModel idProperty;
+
+    private BeanModel(Class<T> type) throws ReflectiveOperationException {
+        this.type = type;
+        Constructor<T> declaredConstructor = type.getDeclaredConstructor();
+        declaredConstructor.setAccessible(true);
+        this.constructor = MethodHandles.lookup().unreflectConstructor(declaredConstructor)
+                .asType(MethodType.methodType(Object.class));
+        List<PropertyModel> properties = new ArrayList<>();
+        Map<String, PropertyModel> columns = new HashMap<>();
+        Map<String, PropertyModel> names = new HashMap<>();
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            // 非transient
+            if (Modifier.isStatic(modifiers) || field.isSynthetic() || field.isAnnotationPresent(Transient.class)) {
+                continue;
+            }
+            // 自定义columnName，@Id字段固定映射到_id
+            String columnName;
+            Column column = field.getAnnotation(Column.class);
+            if (field.isAnnotationPresent(Id.class)) {
+                columnName = ID_COLUMN;
+            } else if (column != null) {
+                columnName = column.name();
+            } else {
+                columnName = BeanCodec.getColumnName(field.getName());
+            }
+            PropertyModel property = new PropertyModel(field, columnName);
+            properties.add(property);
+            columns.put(columnName, property);
+            names.put(field.getName(), property);
+        }
+        this.properties = Collections.unmodifiableList(properties);
+        this.columns = Collections.unmodifiableMap(columns);
+        this.names = Collections.unmodifiableMap(names);
+        this.idProperty = columns.get(ID_COLUMN);
+    }
+
+    /**
+     * 获取class的映射模型，不存在时解析并缓存
+     *
+     * @param type
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BeanModel<T> of(Class<T> type) {
+        // 不使用computeIfAbsent，避免嵌套实体解析时递归修改map
+        BeanModel<T> model = (BeanModel<T>) MODELS.get(type);
+        if (model == null) {
+            try {
+                model = new BeanModel<>(type);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("解析实体映射失败 : " + type.getName(), e);
+            }
+            BeanModel<T> exist = (BeanModel<T>) MODELS.putIfAbsent(type, model);
+            if (exist != null) {
+                model = exist;
+            } else {
+                LOGGER.debug("build bean model : {}", type.getName());
+            }
+        }
+        return model;
+    }
+
+    /**
+     * 判断是否为自定义类型
+     *
+     * @param clazz
+     * @return
+     */
+    static boolean isGenericType(Class<?> clazz) {
+        if (clazz.isPrimitive() || clazz.isArray() || clazz.isEnum() || clazz.isInterface()) {
+            return false;
+        }
+        if (Number.class.isAssignableFrom(clazz) || CharSequence.class.isAssignableFrom(clazz) || Boolean.class.isAssignableFrom(clazz)
+                || Map.class.isAssignableFrom(clazz) || Collection.class.isAssignableFrom(clazz)
+                || BasicDBObject.class.isAssignableFrom(clazz) || BasicDBList.class.isAssignableFrom(clazz)) {
+            return false;
+        }
+        // jdk、bson及驱动自带的类型交给默认codec处理
+        String name = clazz.getName();
+        return !name.startsWith("java.") && !name.startsWith("javax.") && !name.startsWith("org.bson.") && !name.startsWith("com.mongodb.");
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public List<PropertyModel> getProperties() {
+        return properties;
+    }
+
+    /**
+     * 根据列名获取字段
+     *
+     * @param columnName
+     * @return
+     */
+    public PropertyModel getProperty(String columnName) {
+        return columns.get(columnName);
+    }
+
+    /**
+     * 根据字段名获取字段
+     *
+     * @param name
+     * @return
+     */
+    public PropertyModel getPropertyByName(String name) {
+        return names.get(name);
+    }
+
+    /**
+     * 获取映射到_id的字段
+     *
+     * @return 不存在时返回null
+     */
+    public PropertyModel getIdProperty() {
+        return idProperty;
+    }
+
+    /**
+     * 实例化实体
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public T newInstance() {
+        try {
+            Object bean = (Object) constructor.invokeExact();
+            return (T) bean;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BeanModel{" + type.getName() + ", properties=" + properties + '}';
+    }
+}
@@ -0,0 +1,26 @@
+package top.newleaf.mongo.codec;
+
+import java.lang.annotation.*;
+
+/**
+ * String或byte[]字段超过阈值时压缩后保存为二进制(子类型0x84)，解码时自动解压
+ * <p>
+ * 字段声明为Lazy&lt;String&gt;时解码只保留压缩数据，首次get时才解压；解码同时支持未压缩的值，可直接为已有数据加上注解
+ *
+ * @author chengshx
+ */
+@Documented
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Compressed {
+
+    /**
+     * 原始字节数小于该值时不压缩
+     */
+    int threshold() default 1024;
+
+    /**
+     * 压缩算法，解码时按数据头部的id选择算法
+     */
+    Class<? extends FieldCompressor> compressor() default DeflateCompressor.class;
+}
@@ -0,0 +1,83 @@
+package top.newleaf.mongo.codec;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 基于jdk Deflater的压缩，每个线程复用一个Deflater/Inflater
+ *
+ * @author chengshx
+ */
+public class DeflateCompressor implements FieldCompressor {
+
+    public static final byte ID = 1;
+
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    public DeflateCompressor() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level 压缩级别，0~9
+     */
+    public DeflateCompressor(int level) {
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level));
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buffer = new byte[Math.max(64, data.length / 2)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int originalLength) {
+        if (originalLength < 0) {
+            throw new IllegalArgumentException("原始长度无效，length = " + originalLength);
+        }
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(data, offset, length);
+        byte[] result = new byte[originalLength];
+        int position = 0;
+        try {
+            while (position < originalLength && !inflater.finished()) {
+                int count = inflater.inflate(result, position, originalLength - position);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                position += count;
+            }
+            // 数据流提前结束或超出原始长度都视为损坏
+            if (position == originalLength && !inflater.finished() && inflater.inflate(new byte[1]) > 0) {
+                position++;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("解压失败", e);
+        }
+        if (position != originalLength || !inflater.finished()) {
+            throw new IllegalArgumentException("解压后长度不一致，expected = " + originalLength + ", actual = " + position);
+        }
+        return result;
+    }
+}
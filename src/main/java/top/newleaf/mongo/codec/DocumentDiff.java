@@ -0,0 +1,63 @@
+package top.newleaf.mongo.codec;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonValue;
+
+import java.util.Map;
+
+/**
+ * 比较两次编码结果生成最小的$set/$unset更新，嵌套文档逐列比较，数组整体替换
+ *
+ * @author chengshx
+ */
+final class DocumentDiff {
+
+    private static final String ID_FIELD = "_id";
+    private static final BsonInt32 UNSET_VALUE = new BsonInt32(1);
+
+    private DocumentDiff() {
+    }
+
+    /**
+     * @param before 修改前的编码
+     * @param after  当前的编码
+     * @return 无修改时返回空文档
+     */
+    static BsonDocument diff(BsonDocument before, BsonDocument after) {
+        BsonDocument set = new BsonDocument();
+        BsonDocument unset = new BsonDocument();
+        diff("", before, after, set, unset);
+        BsonDocument update = new BsonDocument();
+        if (!set.isEmpty()) {
+            update.put("$set", set);
+        }
+        if (!unset.isEmpty()) {
+            update.put("$unset", unset);
+        }
+        return update;
+    }
+
+    private static void diff(String prefix, BsonDocument before, BsonDocument after, BsonDocument set, BsonDocument unset) {
+        for (Map.Entry<String, BsonValue> entry : after.entrySet()) {
+            String name = entry.getKey();
+            if (prefix.isEmpty() && ID_FIELD.equals(name)) {
+                continue;
+            }
+            BsonValue value = entry.getValue();
+            BsonValue old = before.get(name);
+            if (old == null) {
+                set.put(prefix + name, value);
+            } else if (old.isDocument() && value.isDocument()) {
+                diff(prefix + name + ".", old.asDocument(), value.asDocument(), set, unset);
+            } else if (!old.equals(value)) {
+                set.put(prefix + name, value);
+            }
+        }
+        for (String name : before.keySet()) {
+            if (!after.containsKey(name) && !(prefix.isEmpty() && ID_FIELD.equals(name))) {
+                unset.put(prefix + name, UNSET_VALUE);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package top.newleaf.mongo.codec;
+
+import org.bson.BsonBinary;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Compressed字段的读写
+ * <p>
+ * 压缩值的格式：算法id(1字节) + 原始长度(4字节小端序) + 压缩数据
+ *
+ * @author chengshx
+ */
+final class FieldCompression {
+
+    static final byte SUB_TYPE = (byte) 0x84;
+    private static final int HEADER_LENGTH = 5;
+    /**
+     * 头部中原始长度与压缩数据长度之比的上限，与Deflate的理论最大压缩比一致，防止损坏的头部申请过大的数组
+     */
+    static final int MAX_RATIO = 1032;
+
+    private static final Map<Byte, FieldCompressor> COMPRESSORS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, FieldCompressor> INSTANCES = new ConcurrentHashMap<>();
+
+    static {
+        register(new DeflateCompressor());
+    }
+
+    private FieldCompression() {
+    }
+
+    /**
+     * 注册解码使用的算法，相同id的算法被替换
+     *
+     * @param compressor
+     */
+    static void register(FieldCompressor compressor) {
+        COMPRESSORS.put(compressor.getId(), compressor);
+    }
+
+    /**
+     * 获取注解指定的算法实例，首次使用时创建并注册
+     *
+     * @param clazz
+     * @return
+     */
+    static FieldCompressor of(Class<? extends FieldCompressor> clazz) {
+        return INSTANCES.computeIfAbsent(clazz, key -> {
+            try {
+                FieldCompressor compressor = clazz.getDeclaredConstructor().newInstance();
+                register(compressor);
+                return compressor;
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("创建压缩算法失败 : " + clazz.getName(), e);
+            }
+        });
+    }
+
+    /**
+     * 写入String或byte[]，未达到阈值或压缩后没有变小时按原类型写入
+     *
+     * @param writer
+     * @param property
+     * @param value
+     */
+    static void write(BsonWriter writer, PropertyModel property, Object value) {
+        boolean string = value instanceof String;
+        byte[] data = string ? ((String) value).getBytes(StandardCharsets.UTF_8) : (byte[]) value;
+        if (data.length >= property.getCompressThreshold()) {
+            FieldCompressor compressor = property.getCompressor();
+            byte[] compressed = compressor.compress(data);
+            if (compressed.length + HEADER_LENGTH < data.length) {
+                byte[] bytes = new byte[compressed.length + HEADER_LENGTH];
+                bytes[0] = compressor.getId();
+                bytes[1] = (byte) data.length;
+                bytes[2] = (byte) (data.length >> 8);
+                bytes[3] = (byte) (data.length >> 16);
+                bytes[4] = (byte) (data.length >> 24);
+                System.arraycopy(compressed, 0, bytes, HEADER_LENGTH, compressed.length);
+                writer.writeBinaryData(new BsonBinary(SUB_TYPE, bytes));
+                return;
+            }
+        }
+        if (string) {
+            writer.writeString((String) value);
+        } else {
+            writer.writeBinaryData(new BsonBinary(data));
+        }
+    }
+
+    /**
+     * 读取压缩的二进制值
+     *
+     * @param reader   位于子类型为0x84的二进制值
+     * @param property
+     * @return String或byte[]
+     */
+    static Object read(BsonReader reader, PropertyModel property) {
+        byte[] bytes = reader.readBinaryData().getData();
+        if (bytes.length < HEADER_LENGTH) {
+            throw new IllegalArgumentException("压缩数据不完整 : " + property);
+        }
+        FieldCompressor compressor = COMPRESSORS.get(bytes[0]);
+        if (compressor == null) {
+            throw new IllegalArgumentException("未注册的压缩算法，id = " + bytes[0] + ", field = " + property);
+        }
+        int originalLength = (bytes[1] & 0xff) | (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff) << 16 | (bytes[4] & 0xff) << 24;
+        int compressedLength = bytes.length - HEADER_LENGTH;
+        if (originalLength < 0 || originalLength > (long) compressedLength * MAX_RATIO) {
+            throw new IllegalArgumentException("压缩数据的原始长度无效，length = " + originalLength + ", field = " + property);
+        }
+        byte[] data = compressor.decompress(bytes, HEADER_LENGTH, compressedLength, originalLength);
+        return property.getCompressedType() == String.class ? new String(data, StandardCharsets.UTF_8) : data;
+    }
+}
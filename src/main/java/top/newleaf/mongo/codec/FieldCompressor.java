@@ -0,0 +1,37 @@
+package top.newleaf.mongo.codec;
+
+/**
+ * @Compressed字段使用的压缩算法，实现类需有无参构造方法且线程安全
+ * <p>
+ * id写入每个压缩值的头部，解码时按id选择算法，已有数据使用的id不能更改
+ *
+ * @author chengshx
+ */
+public interface FieldCompressor {
+
+    /**
+     * 算法标识，1为内置的Deflate，自定义算法使用2~127
+     *
+     * @return
+     */
+    byte getId();
+
+    /**
+     * 压缩
+     *
+     * @param data
+     * @return
+     */
+    byte[] compress(byte[] data);
+
+    /**
+     * 解压
+     *
+     * @param data           压缩后的数据
+     * @param offset         起始位置
+     * @param length         长度
+     * @param originalLength 压缩前的长度，不超过length的1032倍，解压结果长度不一致时应抛出IllegalArgumentException
+     * @return
+     */
+    byte[] decompress(byte[] data, int offset, int length, int originalLength);
+}
@@ -0,0 +1,14 @@
+package top.newleaf.mongo.codec;
+
+import java.lang.annotation.*;
+
+/**
+ * 标记CodecProcessor生成的codec，同一实体存在手写codec时MongoFactory使用手写codec
+ *
+ * @author chengshx
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Generated {
+}
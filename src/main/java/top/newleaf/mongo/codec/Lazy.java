@@ -0,0 +1,94 @@
+package top.newleaf.mongo.codec;
+
+import org.bson.RawBsonDocument;
+
+import java.util.function.Function;
+
+/**
+ * 延迟解码的字段值，实体字段声明为Lazy&lt;Entity&gt;或Lazy&lt;List&lt;Entity&gt;&gt;时启用
+ * <p>
+ * 解码时只保留该列的原始bson，首次调用get时才创建对象；未调用过get的值编码时直接复制原始bson
+ * <p>
+ * 非线程安全，与所在实体一样不应在线程间共享修改
+ *
+ * @author chengshx
+ */
+public final class Lazy<T> {
+
+    /**
+     * 原始bson，格式为{"v": 列的值}，解码或修改后置为null
+     */
+    private RawBsonDocument raw;
+    private Function<RawBsonDocument, T> loader;
+    private T value;
+
+    private Lazy(T value) {
+        this.value = value;
+    }
+
+    Lazy(RawBsonDocument raw, Function<RawBsonDocument, T> loader) {
+        this.raw = raw;
+        this.loader = loader;
+    }
+
+    /**
+     * 已解码的值
+     *
+     * @param value
+     * @param <T>
+     * @return
+     */
+    public static <T> Lazy<T> of(T value) {
+        return new Lazy<>(value);
+    }
+
+    /**
+     * 获取值，首次调用时从原始bson解码
+     * <p>
+     * 调用后即视为可能被修改，编码时不再复制原始bson
+     *
+     * @return
+     */
+    public T get() {
+        if (raw != null) {
+            value = loader.apply(raw);
+            raw = null;
+            loader = null;
+        }
+        return value;
+    }
+
+    /**
+     * 替换值，原始bson被丢弃
+     *
+     * @param value
+     */
+    public void set(T value) {
+        this.value = value;
+        this.raw = null;
+        this.loader = null;
+    }
+
+    /**
+     * 是否已解码
+     *
+     * @return
+     */
+    public boolean isLoaded() {
+        return raw == null;
+    }
+
+    /**
+     * 未解码时的原始bson
+     *
+     * @return 已解码时返回null
+     */
+    RawBsonDocument getRaw() {
+        return raw;
+    }
+
+    @Override
+    public String toString() {
+        return raw != null ? "Lazy" + raw.toJson() : "Lazy{" + value + "}";
+    }
+}
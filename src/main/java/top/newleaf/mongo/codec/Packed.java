@@ -0,0 +1,16 @@
+package top.newleaf.mongo.codec;
+
+import java.lang.annotation.*;
+
+/**
+ * int[]、long[]、float[]、double[]及对应包装类型的List字段按小端序保存为一个二进制值，不再逐个元素保存为bson数组
+ * <p>
+ * 二进制子类型为0x80(int)、0x81(long)、0x82(double)、0x83(float)；解码同时支持二进制和bson数组，可直接为已有数据加上注解
+ *
+ * @author chengshx
+ */
+@Documented
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Packed {
+}
@@ -0,0 +1,374 @@
+package top.newleaf.mongo.codec;
+
+import org.bson.BsonBinary;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 数值数组与小端序二进制之间的转换，数组字段直接读写基本类型，不装箱
+ *
+ * @author chengshx
+ */
+final class PackedArrays {
+
+    /**
+     * 元素类型及对应的二进制子类型
+     */
+    enum ElementType {
+        INT((byte) 0x80, 4),
+        LONG((byte) 0x81, 8),
+        DOUBLE((byte) 0x82, 8),
+        FLOAT((byte) 0x83, 4);
+
+        private final byte subType;
+        private final int size;
+
+        ElementType(byte subType, int size) {
+            this.subType = subType;
+            this.size = size;
+        }
+
+        static ElementType of(byte subType) {
+            for (ElementType type : values()) {
+                if (type.subType == subType) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    private PackedArrays() {
+    }
+
+    /**
+     * 字段的元素类型
+     *
+     * @param type        字段类型
+     * @param genericType 字段的泛型类型
+     * @return 不是数值数组或数值List时返回null
+     */
+    static ElementType getElementType(Class<?> type, Type genericType) {
+        if (type == int[].class) {
+            return ElementType.INT;
+        } else if (type == long[].class) {
+            return ElementType.LONG;
+        } else if (type == double[].class) {
+            return ElementType.DOUBLE;
+        } else if (type == float[].class) {
+            return ElementType.FLOAT;
+        } else if (type == List.class && genericType instanceof ParameterizedType) {
+            Type argument = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (argument == Integer.class) {
+                return ElementType.INT;
+            } else if (argument == Long.class) {
+                return ElementType.LONG;
+            } else if (argument == Double.class) {
+                return ElementType.DOUBLE;
+            } else if (argument == Float.class) {
+                return ElementType.FLOAT;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 写入数组或List
+     *
+     * @param writer
+     * @param elementType
+     * @param value       数组或List
+     * @param packed      是否写为二进制
+     */
+    static void write(BsonWriter writer, ElementType elementType, Object value, boolean packed) {
+        if (packed) {
+            writer.writeBinaryData(new BsonBinary(elementType.subType, pack(elementType, value)));
+            return;
+        }
+        writer.writeStartArray();
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                if (element == null) {
+                    writer.writeNull();
+                } else {
+                    writeElement(writer, elementType, (Number) element);
+                }
+            }
+        } else {
+            switch (elementType) {
+                case INT:
+                    for (int element : (int[]) value) {
+                        writer.writeInt32(element);
+                    }
+                    break;
+                case LONG:
+                    for (long element : (long[]) value) {
+                        writer.writeInt64(element);
+                    }
+                    break;
+                case DOUBLE:
+                    for (double element : (double[]) value) {
+                        writer.writeDouble(element);
+                    }
+                    break;
+                default:
+                    for (float element : (float[]) value) {
+                        writer.writeDouble(element);
+                    }
+            }
+        }
+        writer.writeEndArray();
+    }
+
+    private static void writeElement(BsonWriter writer, ElementType elementType, Number element) {
+        switch (elementType) {
+            case INT:
+                writer.writeInt32(element.intValue());
+                break;
+            case LONG:
+                writer.writeInt64(element.longValue());
+                break;
+            default:
+                writer.writeDouble(element.doubleValue());
+        }
+    }
+
+    private static byte[] pack(ElementType elementType, Object value) {
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            ByteBuffer buffer = ByteBuffer.allocate(list.size() * elementType.size).order(ByteOrder.LITTLE_ENDIAN);
+            for (Object element : list) {
+                if (element == null) {
+                    throw new IllegalArgumentException("@Packed的List不能包含null");
+                }
+                Number number = (Number) element;
+                switch (elementType) {
+                    case INT:
+                        buffer.putInt(number.intValue());
+                        break;
+                    case LONG:
+                        buffer.putLong(number.longValue());
+                        break;
+                    case DOUBLE:
+                        buffer.putDouble(number.doubleValue());
+                        break;
+                    default:
+                        buffer.putFloat(number.floatValue());
+                }
+            }
+            return buffer.array();
+        }
+        ByteBuffer buffer;
+        switch (elementType) {
+            case INT:
+                int[] ints = (int[]) value;
+                buffer = allocate(ints.length, elementType);
+                buffer.asIntBuffer().put(ints);
+                break;
+            case LONG:
+                long[] longs = (long[]) value;
+                buffer = allocate(longs.length, elementType);
+                buffer.asLongBuffer().put(longs);
+                break;
+            case DOUBLE:
+                double[] doubles = (double[]) value;
+                buffer = allocate(doubles.length, elementType);
+                buffer.asDoubleBuffer().put(doubles);
+                break;
+            default:
+                float[] floats = (float[]) value;
+                buffer = allocate(floats.length, elementType);
+                buffer.asFloatBuffer().put(floats);
+        }
+        return buffer.array();
+    }
+
+    private static ByteBuffer allocate(int length, ElementType elementType) {
+        return ByteBuffer.allocate(length * elementType.size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 读取二进制或bson数组
+     *
+     * @param reader      位于BINARY或ARRAY值
+     * @param elementType 字段的元素类型
+     * @param list        字段是否为List
+     * @return 二进制子类型无法识别时返回null
+     */
+    static Object read(BsonReader reader, ElementType elementType, boolean list) {
+        if (reader.getCurrentBsonType() == BsonType.ARRAY) {
+            return readArray(reader, elementType, list);
+        }
+        BsonBinary binary = reader.readBinaryData();
+        ElementType storedType = ElementType.of(binary.getType());
+        if (storedType == null || binary.getData().length % storedType.size != 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(binary.getData()).order(ByteOrder.LITTLE_ENDIAN);
+        int length = binary.getData().length / storedType.size;
+        if (list) {
+            List<Number> values = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                values.add(convert(readElement(buffer, storedType), elementType));
+            }
+            return values;
+        }
+        if (storedType == elementType) {
+            // 类型一致时整体复制
+            switch (elementType) {
+                case INT:
+                    int[] ints = new int[length];
+                    buffer.asIntBuffer().get(ints);
+                    return ints;
+                case LONG:
+                    long[] longs = new long[length];
+                    buffer.asLongBuffer().get(longs);
+                    return longs;
+                case DOUBLE:
+                    double[] doubles = new double[length];
+                    buffer.asDoubleBuffer().get(doubles);
+                    return doubles;
+                default:
+                    float[] floats = new float[length];
+                    buffer.asFloatBuffer().get(floats);
+                    return floats;
+            }
+        }
+        Object array = newArray(elementType, length);
+        for (int i = 0; i < length; i++) {
+            setElement(array, elementType, i, readElement(buffer, storedType));
+        }
+        return array;
+    }
+
+    private static Object readArray(BsonReader reader, ElementType elementType, boolean list) {
+        List<Number> values = list ? new ArrayList<>() : null;
+        int capacity = 16;
+        Object array = list ? null : newArray(elementType, capacity);
+        int length = 0;
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            BsonType bsonType = reader.getCurrentBsonType();
+            if (!BeanCodec.isNumber(bsonType)) {
+                // List保留null，基本类型数组跳过null及非数值元素
+                if (list && bsonType == BsonType.NULL) {
+                    values.add(null);
+                }
+                reader.skipValue();
+                continue;
+            }
+            if (list) {
+                values.add(convert(readNumber(reader, bsonType), elementType));
+                continue;
+            }
+            if (length == capacity) {
+                capacity *= 2;
+                array = copyOf(array, elementType, capacity);
+            }
+            switch (elementType) {
+                case INT:
+                    ((int[]) array)[length] = BeanCodec.readInt(reader);
+                    break;
+                case LONG:
+                    ((long[]) array)[length] = BeanCodec.readLong(reader);
+                    break;
+                case DOUBLE:
+                    ((double[]) array)[length] = BeanCodec.readDouble(reader);
+                    break;
+                default:
+                    ((float[]) array)[length] = (float) BeanCodec.readDouble(reader);
+            }
+            length++;
+        }
+        reader.readEndArray();
+        return list ? values : copyOf(array, elementType, length);
+    }
+
+    private static Number readNumber(BsonReader reader, BsonType bsonType) {
+        switch (bsonType) {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            default:
+                return BeanCodec.readDouble(reader);
+        }
+    }
+
+    private static Number readElement(ByteBuffer buffer, ElementType storedType) {
+        switch (storedType) {
+            case INT:
+                return buffer.getInt();
+            case LONG:
+                return buffer.getLong();
+            case DOUBLE:
+                return buffer.getDouble();
+            default:
+                return buffer.getFloat();
+        }
+    }
+
+    private static Number convert(Number number, ElementType elementType) {
+        switch (elementType) {
+            case INT:
+                return number instanceof Integer ? number : number.intValue();
+            case LONG:
+                return number instanceof Long ? number : number.longValue();
+            case DOUBLE:
+                return number instanceof Double ? number : number.doubleValue();
+            default:
+                return number instanceof Float ? number : number.floatValue();
+        }
+    }
+
+    private static Object newArray(ElementType elementType, int length) {
+        switch (elementType) {
+            case INT:
+                return new int[length];
+            case LONG:
+                return new long[length];
+            case DOUBLE:
+                return new double[length];
+            default:
+                return new float[length];
+        }
+    }
+
+    private static void setElement(Object array, ElementType elementType, int index, Number number) {
+        switch (elementType) {
+            case INT:
+                ((int[]) array)[index] = number.intValue();
+                break;
+            case LONG:
+                ((long[]) array)[index] = number.longValue();
+                break;
+            case DOUBLE:
+                ((double[]) array)[index] = number.doubleValue();
+                break;
+            default:
+                ((float[]) array)[index] = number.floatValue();
+        }
+    }
+
+    private static Object copyOf(Object array, ElementType elementType, int length) {
+        switch (elementType) {
+            case INT:
+                return Arrays.copyOf((int[]) array, length);
+            case LONG:
+                return Arrays.copyOf((long[]) array, length);
+            case DOUBLE:
+                return Arrays.copyOf((double[]) array, length);
+            default:
+                return Arrays.copyOf((float[]) array, length);
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package top.newleaf.mongo.codec;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 实体字段与集合列的映射，构建完成后只读，可在线程间共享
+ *
+ * @author chengshx
+ */
+public class PropertyModel {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * 字段类别
+     */
+    public enum Kind {
+        /**
+         * 普通值，交给默认codec处理
+         */
+        VALUE,
+        /**
+         * 自定义实体
+         */
+        ENTITY,
+        /**
+         * 自定义实体的List
+         */
+        ENTITY_LIST
+    }
+
+    /**
+     * 可直接用类型化的bson方法读写的值类型
+     */
+    public enum ValueType {
+        OBJECT, INT, LONG, DOUBLE, BOOLEAN, DATE
+    }
+
+    private final Field field;
+    private final String columnName;
+    /**
+     * 列名的cstring编码(含结束符)，包含"."或以"$"开头的列名为null，仍交给writer校验
+     */
+    private final byte[] encodedName;
+    private final Kind kind;
+    /**
+     * ENTITY为字段类型，ENTITY_LIST为List的泛型类型
+     */
+    private final Class<?> genericType;
+    private final ValueType valueType;
+    private final boolean primitive;
+    /**
+     * 字段类型为Lazy，kind、genericType和valueType描述Lazy中的值
+     */
+    private final boolean lazy;
+    /**
+     * 数值数组或数值List的元素类型，其余字段为null
+     */
+    private final PackedArrays.ElementType elementType;
+    /**
+     * 标注了@Packed，按二进制写入
+     */
+    private final boolean packed;
+    /**
+     * 标注了@Compressed时的压缩算法和阈值，compressedType为String或byte[]
+     */
+    private final FieldCompressor compressor;
+    private final int compressThreshold;
+    private final Class<?> compressedType;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    /**
+     * 基本类型字段的类型化读写，避免装箱
+     */
+    private final MethodHandle primitiveGetter;
+    private final MethodHandle primitiveSetter;
+    private volatile BeanModel<?> genericModel;
+
+    PropertyModel(Field field, String columnName) throws ReflectiveOperationException {
+        this.field = field;
+        this.columnName = columnName;
+        this.encodedName = columnName.indexOf('.') >= 0 || columnName.startsWith("$") || columnName.indexOf('\0') >= 0
+                ? null : (columnName + '\0').getBytes(StandardCharsets.UTF_8);
+        Class<?> fieldType = field.getType();
+        Type contentType = field.getGenericType();
+        lazy = fieldType == Lazy.class;
+        if (lazy) {
+            contentType = getTypeArgument(contentType);
+            if (contentType == null) {
+                throw new IllegalArgumentException("Lazy字段需指定泛型 : " + field);
+            }
+        }
+        Class<?> type = getRawType(contentType);
+        Class<?> elementType = type == List.class ? getClassArgument(contentType) : null;
+        if (elementType != null && BeanModel.isGenericType(elementType)) {
+            kind = Kind.ENTITY_LIST;
+            genericType = elementType;
+        } else if (BeanModel.isGenericType(type)) {
+            kind = Kind.ENTITY;
+            genericType = type;
+        } else {
+            kind = Kind.VALUE;
+            genericType = null;
+        }
+        valueType = getValueType(type);
+        this.elementType = PackedArrays.getElementType(type, contentType);
+        packed = field.isAnnotationPresent(Packed.class);
+        if (packed && this.elementType == null) {
+            throw new IllegalArgumentException("@Packed只支持数值数组和数值List : " + field);
+        }
+        Compressed compressed = field.getAnnotation(Compressed.class);
+        if (compressed != null) {
+            if (type != String.class && type != byte[].class) {
+                throw new IllegalArgumentException("@Compressed只支持String和byte[] : " + field);
+            }
+            compressor = FieldCompression.of(compressed.compressor());
+            compressThreshold = compressed.threshold();
+            compressedType = type;
+        } else {
+            compressor = null;
+            compressThreshold = 0;
+            compressedType = null;
+        }
+        primitive = fieldType.isPrimitive() && valueType != ValueType.OBJECT;
+        MethodHandle getterHandle = findGetter(field);
+        MethodHandle setterHandle = findSetter(field);
+        getter = getterHandle.asType(GETTER_TYPE);
+        setter = setterHandle.asType(SETTER_TYPE);
+        if (primitive) {
+            primitiveGetter = getterHandle.asType(MethodType.methodType(fieldType, Object.class));
+            primitiveSetter = setterHandle.asType(MethodType.methodType(void.class, Object.class, fieldType));
+        } else {
+            primitiveGetter = null;
+            primitiveSetter = null;
+        }
+    }
+
+    public String getName() {
+        return field.getName();
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * 预先编码的列名，供BeanCodec直接写入二进制输出
+     *
+     * @return
+     */
+    byte[] getEncodedName() {
+        return encodedName;
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public ValueType getValueType() {
+        return valueType;
+    }
+
+    /**
+     * 是否为可类型化读写的基本类型字段
+     *
+     * @return
+     */
+    public boolean isPrimitive() {
+        return primitive;
+    }
+
+    /**
+     * 是否为延迟解码的字段
+     *
+     * @return
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * 是否按二进制保存数值数组
+     *
+     * @return
+     */
+    public boolean isPacked() {
+        return packed;
+    }
+
+    PackedArrays.ElementType getElementType() {
+        return elementType;
+    }
+
+    /**
+     * 是否压缩保存
+     *
+     * @return
+     */
+    public boolean isCompressed() {
+        return compressor != null;
+    }
+
+    FieldCompressor getCompressor() {
+        return compressor;
+    }
+
+    int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    Class<?> getCompressedType() {
+        return compressedType;
+    }
+
+    public Class<?> getGenericType() {
+        return genericType;
+    }
+
+    /**
+     * 获取泛型实体的映射模型，首次使用时解析，支持实体自引用
+     *
+     * @return
+     */
+    public BeanModel<?> getGenericModel() {
+        BeanModel<?> model = genericModel;
+        if (model == null && genericType != null) {
+            model = BeanModel.of(genericType);
+            genericModel = model;
+        }
+        return model;
+    }
+
+    /**
+     * 读取字段值
+     *
+     * @param bean
+     * @return
+     */
+    public Object get(Object bean) {
+        try {
+            return (Object) getter.invokeExact(bean);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * 设置字段值
+     *
+     * @param bean
+     * @param value
+     */
+    public void set(Object bean, Object value) {
+        try {
+            setter.invokeExact(bean, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public int getInt(Object bean) {
+        try {
+            return (int) primitiveGetter.invokeExact(bean);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setInt(Object bean, int value) {
+        try {
+            primitiveSetter.invokeExact(bean, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public long getLong(Object bean) {
+        try {
+            return (long) primitiveGetter.invokeExact(bean);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setLong(Object bean, long value) {
+        try {
+            primitiveSetter.invokeExact(bean, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public double getDouble(Object bean) {
+        try {
+            return (double) primitiveGetter.invokeExact(bean);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setDouble(Object bean, double value) {
+        try {
+            primitiveSetter.invokeExact(bean, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public boolean getBoolean(Object bean) {
+        try {
+            return (boolean) primitiveGetter.invokeExact(bean);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public void setBoolean(Object bean, boolean value) {
+        try {
+            primitiveSetter.invokeExact(bean, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new UndeclaredThrowableException(e);
+    }
+
+    private static ValueType getValueType(Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return ValueType.INT;
+        } else if (type == long.class || type == Long.class) {
+            return ValueType.LONG;
+        } else if (type == double.class || type == Double.class) {
+            return ValueType.DOUBLE;
+        } else if (type == boolean.class || type == Boolean.class) {
+            return ValueType.BOOLEAN;
+        } else if (type == Date.class) {
+            return ValueType.DATE;
+        }
+        return ValueType.OBJECT;
+    }
+
+    /**
+     * 优先使用get方法，不存在时直接读取字段
+     *
+     * @param field
+     * @return
+     * @throws IllegalAccessException
+     */
+    private static MethodHandle findGetter(Field field) throws IllegalAccessException {
+        Method method = findMethod(field.getDeclaringClass(), getMethodGetName(field));
+        if (method == null && (field.getType() == boolean.class || field.getType() == Boolean.class)) {
+            method = findMethod(field.getDeclaringClass(), "is" + capitalize(field.getName()));
+        }
+        if (method != null) {
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        }
+        field.setAccessible(true);
+        return MethodHandles.lookup().unreflectGetter(field);
+    }
+
+    /**
+     * 优先使用set方法，不存在时直接写入字段
+     *
+     * @param field
+     * @return
+     * @throws IllegalAccessException
+     */
+    private static MethodHandle findSetter(Field field) throws IllegalAccessException {
+        Method method = findMethod(field.getDeclaringClass(), getMethodSetName(field), field.getType());
+        if (method != null) {
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        }
+        field.setAccessible(true);
+        return MethodHandles.lookup().unreflectSetter(field);
+    }
+
+    private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Type getTypeArgument(Type type) {
+        if (type instanceof ParameterizedType) {
+            return ((ParameterizedType) type).getActualTypeArguments()[0];
+        }
+        return null;
+    }
+
+    private static Class<?> getClassArgument(Type type) {
+        Type argument = getTypeArgument(type);
+        return argument instanceof Class ? (Class<?>) argument : null;
+    }
+
+    private static Class<?> getRawType(Type type) {
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        return type instanceof Class ? (Class<?>) type : Object.class;
+    }
+
+    private static String getMethodSetName(Field field) {
+        return "set" + capitalize(field.getName());
+    }
+
+    private static String getMethodGetName(Field field) {
+        return "get" + capitalize(field.getName());
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    @Override
+    public String toString() {
+        return field.getDeclaringClass().getSimpleName() + "." + field.getName() + " -> " + columnName;
+    }
+}
@@ -0,0 +1,154 @@
+package top.newleaf.mongo.codec;
+
+import org.bson.*;
+import org.bson.codecs.BsonValueCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.io.BsonInput;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 在不创建实体的情况下截取和复制bson值，供Lazy字段使用
+ * <p>
+ * 截取的值保存为{"v": 值}格式的RawBsonDocument
+ *
+ * @author chengshx
+ */
+final class RawBson {
+
+    static final String VALUE_NAME = "v";
+    private static final BsonValueCodec BSON_VALUE_CODEC = new BsonValueCodec();
+
+    private RawBson() {
+    }
+
+    /**
+     * 截取reader当前位置的值
+     * <p>
+     * 二进制reader直接复制值的字节，其余reader逐个复制元素
+     *
+     * @param reader 位于值的位置，返回时已读过该值
+     * @return
+     */
+    static RawBsonDocument wrap(BsonReader reader) {
+        if (reader instanceof BsonBinaryReader) {
+            BsonType bsonType = reader.getCurrentBsonType();
+            BsonInput input = ((BsonBinaryReader) reader).getBsonInput();
+            int start = input.getPosition();
+            // 先跳过得到值的长度，再回到起点复制字节
+            input.mark(Integer.MAX_VALUE);
+            reader.skipValue();
+            int length = input.getPosition() - start;
+            input.reset();
+            // 文档长度(4) + 类型(1) + "v\0"(2) + 值 + 结束符(1)
+            byte[] bytes = new byte[length + 8];
+            int size = bytes.length;
+            bytes[0] = (byte) size;
+            bytes[1] = (byte) (size >> 8);
+            bytes[2] = (byte) (size >> 16);
+            bytes[3] = (byte) (size >> 24);
+            bytes[4] = (byte) bsonType.getValue();
+            bytes[5] = 'v';
+            bytes[6] = 0;
+            input.readBytes(bytes, 7, length);
+            bytes[size - 1] = 0;
+            return new RawBsonDocument(bytes);
+        }
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        BsonBinaryWriter writer = new BsonBinaryWriter(buffer);
+        writer.writeStartDocument();
+        writer.writeName(VALUE_NAME);
+        copyValue(reader, writer);
+        writer.writeEndDocument();
+        writer.close();
+        return new RawBsonDocument(buffer.getInternalBuffer(), 0, buffer.getPosition());
+    }
+
+    /**
+     * 打开截取的值，返回的reader位于值的位置
+     *
+     * @param raw
+     * @return
+     */
+    static BsonBinaryReader open(RawBsonDocument raw) {
+        BsonBinaryReader reader = new BsonBinaryReader(raw.getByteBuffer().asNIO());
+        reader.readStartDocument();
+        reader.readBsonType();
+        reader.skipName();
+        return reader;
+    }
+
+    /**
+     * 将截取的值写入writer，其中的文档按字节整体复制
+     *
+     * @param raw
+     * @param writer 已写入列名
+     */
+    static void pipe(RawBsonDocument raw, BsonWriter writer) {
+        ByteBuffer buffer = raw.getByteBuffer().asNIO();
+        try (BsonBinaryReader reader = new BsonBinaryReader(buffer.duplicate())) {
+            reader.readStartDocument();
+            reader.readBsonType();
+            reader.skipName();
+            pipeValue(reader, buffer, writer);
+        }
+    }
+
+    private static void pipeValue(BsonBinaryReader reader, ByteBuffer buffer, BsonWriter writer) {
+        BsonType bsonType = reader.getCurrentBsonType();
+        if (bsonType == BsonType.DOCUMENT) {
+            BsonInput input = reader.getBsonInput();
+            int start = input.getPosition();
+            reader.skipValue();
+            ByteBuffer document = buffer.duplicate();
+            document.limit(input.getPosition());
+            document.position(start);
+            try (BsonBinaryReader documentReader = new BsonBinaryReader(document.slice())) {
+                writer.pipe(documentReader);
+            }
+        } else if (bsonType == BsonType.ARRAY) {
+            reader.readStartArray();
+            writer.writeStartArray();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                pipeValue(reader, buffer, writer);
+            }
+            reader.readEndArray();
+            writer.writeEndArray();
+        } else {
+            copyValue(reader, writer);
+        }
+    }
+
+    /**
+     * 逐个元素复制reader当前位置的值
+     *
+     * @param reader
+     * @param writer
+     */
+    static void copyValue(BsonReader reader, BsonWriter writer) {
+        BsonType bsonType = reader.getCurrentBsonType();
+        if (bsonType == BsonType.DOCUMENT) {
+            reader.readStartDocument();
+            writer.writeStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                writer.writeName(reader.readName());
+                copyValue(reader, writer);
+            }
+            reader.readEndDocument();
+            writer.writeEndDocument();
+        } else if (bsonType == BsonType.ARRAY) {
+            reader.readStartArray();
+            writer.writeStartArray();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                copyValue(reader, writer);
+            }
+            reader.readEndArray();
+            writer.writeEndArray();
+        } else {
+            BsonValue value = BSON_VALUE_CODEC.decode(reader, DecoderContext.builder().build());
+            BSON_VALUE_CODEC.encode(writer, value, EncoderContext.builder().build());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package top.newleaf.mongo.codec;
+
+import org.bson.RawBsonDocument;
+
+/**
+ * 可跟踪修改的实体，BeanCodec解码后保存编码快照，保存时与当前值比较生成$set/$unset
+ * <p>
+ * 实现类保存快照的字段需标注@Transient，也可直接继承TrackableEntity
+ *
+ * @author chengshx
+ */
+public interface Trackable {
+
+    /**
+     * 解码或上次保存后的编码快照
+     *
+     * @return 新建的实体返回null
+     */
+    RawBsonDocument getSnapshot();
+
+    void setSnapshot(RawBsonDocument snapshot);
+}
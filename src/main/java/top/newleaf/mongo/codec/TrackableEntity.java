@@ -0,0 +1,26 @@
+package top.newleaf.mongo.codec;
+
+import org.bson.RawBsonDocument;
+
+import javax.persistence.Transient;
+
+/**
+ * 可跟踪修改的实体基类
+ *
+ * @author chengshx
+ */
+public abstract class TrackableEntity implements Trackable {
+
+    @Transient
+    private transient RawBsonDocument snapshot;
+
+    @Override
+    public RawBsonDocument getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public void setSnapshot(RawBsonDocument snapshot) {
+        this.snapshot = snapshot;
+    }
+}
@@ -0,0 +1,362 @@
+package top.newleaf.mongo.factory;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientURI;
+import com.mongodb.async.SingleResultCallback;
+import com.mongodb.async.client.MongoClient;
+import com.mongodb.async.client.MongoClientSettings;
+import com.mongodb.async.client.MongoClients;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.async.client.MongoDatabase;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.connection.ClusterSettings;
+import com.mongodb.connection.ConnectionPoolSettings;
+import com.mongodb.connection.ServerSettings;
+import com.mongodb.connection.SocketSettings;
+import com.mongodb.connection.SslSettings;
+import org.bson.BsonValue;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import top.newleaf.mongo.codec.BeanCodec;
+import top.newleaf.mongo.read.ReadConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于异步驱动的数据库，与同步的MongoDB使用相同的连接配置和codec
+ * <p>
+ * 需要引入mongodb-driver-async依赖；返回的CompletableFuture在驱动的IO线程中完成，后续有阻塞操作时应使用*Async方法指定线程池；
+ * 写入完成（包括失败）后、future完成前使同步MongoDB中对应的缓存失效
+ *
+ * @author chengshx
+ */
+public class AsyncMongoDB {
+
+    private static final String ID_FIELD = "_id";
+    /**
+     * 与同步客户端相同，uri和连接配置都相同的连接共用一个异步客户端
+     */
+    private static final Map<MongoClientURI, MongoClient> CLIENTS = new ConcurrentHashMap<>();
+
+    private final MongoDB mongoDB;
+    private final MongoDatabase mongoDatabase;
+    private final ReadConfig readConfig;
+
+    AsyncMongoDB(MongoDB mongoDB, MongoConnection connection, CodecRegistry codecRegistry) {
+        this.mongoDB = mongoDB;
+        MongoClientURI key = MongoFactory.getInstance().getClientURI(connection, codecRegistry);
+        MongoClient client = CLIENTS.computeIfAbsent(key, uri -> MongoClients.create(buildSettings(connection, codecRegistry)));
+        MongoDatabase database = client.getDatabase(connection.getDb()).withCodecRegistry(codecRegistry);
+        this.readConfig = MongoFactory.getReadConfig(connection);
+        this.mongoDatabase = withReadConfig(database, readConfig);
+    }
+
+    /**
+     * 使用已有的异步数据库，读取路由由数据库本身决定
+     *
+     * @param mongoDB
+     * @param mongoDatabase
+     */
+    AsyncMongoDB(MongoDB mongoDB, MongoDatabase mongoDatabase) {
+        this.mongoDB = mongoDB;
+        this.mongoDatabase = mongoDatabase;
+        this.readConfig = new ReadConfig();
+    }
+
+    /**
+     * 按与同步客户端相同的规则生成配置：uri参数为基础，mongo.xml中的连接池、超时、ssl配置覆盖uri参数，
+     * 压缩算法、codec和命令统计监听器与同步客户端相同
+     *
+     * @param connection
+     * @param codecRegistry
+     * @return
+     */
+    static MongoClientSettings buildSettings(MongoConnection connection, CodecRegistry codecRegistry) {
+        ConnectionString connectionString = new ConnectionString(MongoFactory.withCompressors(connection));
+        ClusterSettings.Builder cluster = ClusterSettings.builder().applyConnectionString(connectionString);
+        if (connection.getServerSelectionTimeout() != null) {
+            cluster.serverSelectionTimeout(connection.getServerSelectionTimeout(), TimeUnit.MILLISECONDS);
+        }
+        ConnectionPoolSettings.Builder pool = ConnectionPoolSettings.builder().applyConnectionString(connectionString);
+        if (connection.getMaxPoolSize() != null) {
+            pool.maxSize(connection.getMaxPoolSize());
+        }
+        if (connection.getMinPoolSize() != null) {
+            pool.minSize(connection.getMinPoolSize());
+        }
+        if (connection.getMaxWaitTime() != null) {
+            pool.maxWaitTime(connection.getMaxWaitTime(), TimeUnit.MILLISECONDS);
+        }
+        if (connection.getMaxConnectionIdleTime() != null) {
+            pool.maxConnectionIdleTime(connection.getMaxConnectionIdleTime(), TimeUnit.MILLISECONDS);
+        }
+        if (connection.getMaxConnectionLifeTime() != null) {
+            pool.maxConnectionLifeTime(connection.getMaxConnectionLifeTime(), TimeUnit.MILLISECONDS);
+        }
+        if (connection.getWaitQueueMultiple() != null) {
+            // 与同步客户端相同，等待队列长度为倍数乘以连接池大小
+            pool.maxWaitQueueSize(connection.getWaitQueueMultiple() * pool.build().getMaxSize());
+        }
+        SocketSettings.Builder socket = SocketSettings.builder().applyConnectionString(connectionString);
+        if (connection.getConnectTimeout() != null) {
+            socket.connectTimeout(connection.getConnectTimeout(), TimeUnit.MILLISECONDS);
+        }
+        if (connection.getSocketTimeout() != null) {
+            socket.readTimeout(connection.getSocketTimeout(), TimeUnit.MILLISECONDS);
+        }
+        ServerSettings.Builder server = ServerSettings.builder().applyConnectionString(connectionString);
+        if (connection.getHeartbeatFrequency() != null) {
+            server.heartbeatFrequency(connection.getHeartbeatFrequency(), TimeUnit.MILLISECONDS);
+        }
+        SslSettings.Builder ssl = SslSettings.builder().applyConnectionString(connectionString);
+        if (connection.getSslEnabled() != null) {
+            ssl.enabled(connection.getSslEnabled());
+        }
+        MongoClientSettings.Builder builder = MongoClientSettings.builder()
+                .clusterSettings(cluster.build())
+                .connectionPoolSettings(pool.build())
+                .socketSettings(socket.build())
+                .heartbeatSocketSettings(SocketSettings.builder().applyConnectionString(connectionString).build())
+                .serverSettings(server.build())
+                .sslSettings(ssl.build())
+                .compressorList(connectionString.getCompressorList())
+                .retryWrites(connectionString.getRetryWrites())
+                .codecRegistry(codecRegistry)
+                .addCommandListener(MongoFactory.getInstance().getMetricsListener());
+        if (connectionString.getCredential() != null) {
+            builder.credential(connectionString.getCredential());
+        }
+        if (connectionString.getReadPreference() != null) {
+            builder.readPreference(connectionString.getReadPreference());
+        }
+        if (connectionString.getReadConcern() != null) {
+            builder.readConcern(connectionString.getReadConcern());
+        }
+        if (connectionString.getWriteConcern() != null) {
+            builder.writeConcern(connectionString.getWriteConcern());
+        }
+        String applicationName = connection.getApplicationName() != null ? connection.getApplicationName() : connectionString.getApplicationName();
+        if (applicationName != null) {
+            builder.applicationName(applicationName);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 关闭全部异步客户端
+     */
+    public static void closeClients() {
+        for (MongoClient client : CLIENTS.values()) {
+            client.close();
+        }
+        CLIENTS.clear();
+    }
+
+    public MongoDatabase getMongoDatabase() {
+        return mongoDatabase;
+    }
+
+    /**
+     * 获取自定义解析器集合，读取路由与同步集合相同
+     *
+     * @param clazz
+     * @return
+     */
+    public <T> MongoCollection<T> getCollection(Class<T> clazz) {
+        MongoFactory factory = MongoFactory.getInstance();
+        MongoCollection<T> collection = mongoDatabase.getCollection(factory.getCollectionName(clazz), clazz);
+        // 实体的读取路由逐项覆盖连接的配置
+        ReadConfig entityConfig = factory.getReadConfig(clazz);
+        if (entityConfig.isEmpty()) {
+            return collection;
+        }
+        ReadConfig merged = entityConfig.merge(readConfig);
+        if (merged.getReadPreference() != null) {
+            collection = collection.withReadPreference(merged.getReadPreference());
+        }
+        if (merged.getReadConcern() != null) {
+            collection = collection.withReadConcern(merged.getReadConcern());
+        }
+        return collection;
+    }
+
+    /**
+     * 按id查询
+     *
+     * @param clazz
+     * @param id    id字段类型的值
+     * @return 不存在时结果为null
+     */
+    public <T> CompletableFuture<T> findById(Class<T> clazz, Object id) {
+        return first(clazz, Filters.eq(ID_FIELD, getBeanCodec(clazz).toIdValue(id)));
+    }
+
+    /**
+     * 查询符合条件的第一个文档
+     *
+     * @param clazz
+     * @param filter
+     * @return
+     */
+    public <T> CompletableFuture<T> first(Class<T> clazz, Bson filter) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        getCollection(clazz).find(filter).first(complete(future));
+        return future;
+    }
+
+    /**
+     * 查询符合条件的全部文档，结果全部放入内存，大量数据请使用getCollection(clazz).find().batchCursor
+     *
+     * @param clazz
+     * @param filter
+     * @return
+     */
+    public <T> CompletableFuture<List<T>> find(Class<T> clazz, Bson filter) {
+        CompletableFuture<List<T>> future = new CompletableFuture<>();
+        getCollection(clazz).find(filter).into(new ArrayList<>(), complete(future));
+        return future;
+    }
+
+    /**
+     * 插入实体，_id为空时在客户端生成
+     *
+     * @param entity
+     * @return 结果为插入的实体
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> insert(T entity) {
+        Class<T> clazz = (Class<T>) entity.getClass();
+        BeanCodec<T> codec = getBeanCodec(clazz);
+        codec.generateIdIfAbsentFromDocument(entity);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        // 没有id字段的实体由服务端生成_id，不会已在缓存中
+        SingleResultCallback<Void> callback = codec.documentHasId(entity) ? invalidate(future, clazz, codec.getDocumentId(entity)) : complete(future);
+        getCollection(clazz).insertOne(entity, callback);
+        return future.thenApply(result -> entity);
+    }
+
+    /**
+     * 按实体id替换文档
+     *
+     * @param entity
+     * @param upsert 不存在时是否插入
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<UpdateResult> replace(T entity, boolean upsert) {
+        Class<T> clazz = (Class<T>) entity.getClass();
+        BeanCodec<T> codec = getBeanCodec(clazz);
+        if (upsert) {
+            codec.generateIdIfAbsentFromDocument(entity);
+        }
+        CompletableFuture<UpdateResult> future = new CompletableFuture<>();
+        BsonValue key = codec.getDocumentId(entity);
+        getCollection(clazz).replaceOne(Filters.eq(ID_FIELD, key), entity,
+                new UpdateOptions().upsert(upsert), invalidate(future, clazz, key));
+        return future;
+    }
+
+    /**
+     * 按id更新文档
+     *
+     * @param clazz
+     * @param id
+     * @param update
+     * @return
+     */
+    public <T> CompletableFuture<UpdateResult> update(Class<T> clazz, Object id, Bson update) {
+        CompletableFuture<UpdateResult> future = new CompletableFuture<>();
+        BsonValue key = getBeanCodec(clazz).toIdValue(id);
+        getCollection(clazz).updateOne(Filters.eq(ID_FIELD, key), update, invalidate(future, clazz, key));
+        return future;
+    }
+
+    /**
+     * 按id删除文档
+     *
+     * @param clazz
+     * @param id
+     * @return
+     */
+    public <T> CompletableFuture<DeleteResult> deleteById(Class<T> clazz, Object id) {
+        CompletableFuture<DeleteResult> future = new CompletableFuture<>();
+        BsonValue key = getBeanCodec(clazz).toIdValue(id);
+        getCollection(clazz).deleteOne(Filters.eq(ID_FIELD, key), invalidate(future, clazz, key));
+        return future;
+    }
+
+    /**
+     * 批量写入，完成后清空实体的缓存
+     *
+     * @param clazz
+     * @param requests
+     * @param ordered  是否按顺序写入
+     * @return
+     */
+    public <T> CompletableFuture<BulkWriteResult> bulkWrite(Class<T> clazz, List<? extends WriteModel<? extends T>> requests, boolean ordered) {
+        CompletableFuture<BulkWriteResult> future = new CompletableFuture<>();
+        getCollection(clazz).bulkWrite(requests, new BulkWriteOptions().ordered(ordered), invalidate(future, clazz, null));
+        return future;
+    }
+
+    private static MongoDatabase withReadConfig(MongoDatabase database, ReadConfig readConfig) {
+        if (readConfig.getReadPreference() != null) {
+            database = database.withReadPreference(readConfig.getReadPreference());
+        }
+        if (readConfig.getReadConcern() != null) {
+            database = database.withReadConcern(readConfig.getReadConcern());
+        }
+        return database;
+    }
+
+    private <T> BeanCodec<T> getBeanCodec(Class<T> clazz) {
+        return MongoDB.getBeanCodec(mongoDatabase.getCodecRegistry(), clazz);
+    }
+
+    /**
+     * 写入完成后先使缓存失效再完成future，后续的findById可读到写入后的文档
+     *
+     * @param future
+     * @param clazz
+     * @param key    为null时清空实体的缓存
+     * @return
+     */
+    private <R> SingleResultCallback<R> invalidate(CompletableFuture<R> future, Class<?> clazz, BsonValue key) {
+        SingleResultCallback<R> callback = complete(future);
+        return (result, t) -> {
+            try {
+                CachedCollection<?> cached = mongoDB.getCachedIfPresent(clazz);
+                if (cached != null) {
+                    if (key == null) {
+                        cached.getCache().clear();
+                    } else {
+                        cached.getCache().invalidate(key);
+                    }
+                }
+            } finally {
+                callback.onResult(result, t);
+            }
+        };
+    }
+
+    private static <R> SingleResultCallback<R> complete(CompletableFuture<R> future) {
+        return (result, t) -> {
+            if (t != null) {
+                future.completeExceptionally(t);
+            } else {
+                future.complete(result);
+            }
+        };
+    }
+}
@@ -0,0 +1,157 @@
+package top.newleaf.mongo.factory;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import top.newleaf.mongo.cache.CacheConfig;
+import top.newleaf.mongo.cache.EntityCache;
+import top.newleaf.mongo.codec.BeanCodec;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带按id二级缓存的集合视图
+ * <p>
+ * 缓存保存文档的原始bson，命中时重新解码，调用方修改返回的实体不会影响缓存；
+ * 通过本类及MongoDB的save、bulkInsert、importFrom、writeBehind、async()发起的写操作会使缓存失效，直接操作getCollection()时需自行调用invalidate
+ *
+ * @author chengshx
+ */
+public class CachedCollection<T> {
+
+    private static final String ID_FIELD = "_id";
+
+    private final MongoCollection<T> collection;
+    private final MongoCollection<RawBsonDocument> rawCollection;
+    private final BeanCodec<T> codec;
+    private final EntityCache<BsonValue, RawBsonDocument> cache;
+
+    CachedCollection(MongoCollection<T> collection, Class<T> clazz, CacheConfig config) {
+        this.codec = MongoDB.getBeanCodec(collection.getCodecRegistry(), clazz);
+        this.collection = collection;
+        this.rawCollection = collection.withDocumentClass(RawBsonDocument.class);
+        this.cache = new EntityCache<>(config.getMaxSize(), config.getTtl(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * 按id查询，优先读取缓存
+     *
+     * @param id id字段类型的值
+     * @return
+     */
+    public T findById(Object id) {
+        BsonValue key = codec.toIdValue(id);
+        RawBsonDocument raw = cache.get(key);
+        if (raw == null) {
+            long stamp = cache.stamp();
+            raw = rawCollection.find(Filters.eq(ID_FIELD, key)).first();
+            if (raw == null) {
+                return null;
+            }
+            cache.put(key, raw, stamp);
+        }
+        return raw.decode(codec);
+    }
+
+    /**
+     * 插入实体，不写入缓存
+     *
+     * @param entity
+     */
+    public void insert(T entity) {
+        collection.insertOne(entity);
+    }
+
+    /**
+     * 按实体id替换文档并使缓存失效
+     *
+     * @param entity
+     * @return
+     */
+    public UpdateResult replace(T entity) {
+        BsonValue key = codec.getDocumentId(entity);
+        try {
+            return collection.replaceOne(Filters.eq(ID_FIELD, key), entity);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * 保存实体并使缓存失效，findById得到的实体只发送修改的列
+     *
+     * @param entity
+     * @return 实体无修改时返回null
+     */
+    public UpdateResult save(T entity) {
+        codec.generateIdIfAbsentFromDocument(entity);
+        BsonValue key = codec.getDocumentId(entity);
+        try {
+            return MongoDB.save(collection, codec, entity);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * 按id更新文档并使缓存失效
+     *
+     * @param id
+     * @param update
+     * @return
+     */
+    public UpdateResult update(Object id, Bson update) {
+        BsonValue key = codec.toIdValue(id);
+        try {
+            return collection.updateOne(Filters.eq(ID_FIELD, key), update);
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * 按id删除文档并使缓存失效
+     *
+     * @param id
+     * @return
+     */
+    public DeleteResult deleteById(Object id) {
+        BsonValue key = codec.toIdValue(id);
+        try {
+            return collection.deleteOne(Filters.eq(ID_FIELD, key));
+        } finally {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * 使指定id的缓存失效
+     *
+     * @param id
+     */
+    public void invalidate(Object id) {
+        cache.invalidate(codec.toIdValue(id));
+    }
+
+    /**
+     * 缓存本身，可获取命中、未命中和淘汰次数
+     *
+     * @return
+     */
+    public EntityCache<BsonValue, RawBsonDocument> getCache() {
+        return cache;
+    }
+
+    /**
+     * 底层集合，通过它写入时不会使缓存失效
+     *
+     * @return
+     */
+    public MongoCollection<T> getCollection() {
+        return collection;
+    }
+}
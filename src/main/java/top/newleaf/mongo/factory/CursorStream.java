@@ -0,0 +1,90 @@
+package top.newleaf.mongo.factory;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Decoder;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 将游标包装为Stream，按批次从服务端拉取，内存中只保留当前批次
+ * <p>
+ * 遍历结束、遍历异常或关闭Stream时关闭游标；提前结束遍历（如limit、findFirst）时需使用try-with-resources关闭
+ *
+ * @author chengshx
+ */
+public final class CursorStream {
+
+    private CursorStream() {
+    }
+
+    /**
+     * 创建顺序Stream，调用时才打开游标
+     *
+     * @param iterable 已设置好查询条件和batchSize的查询
+     * @return
+     */
+    public static <T> Stream<T> of(MongoIterable<T> iterable) {
+        CursorSpliterator<T> spliterator = new CursorSpliterator<>(iterable.iterator());
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    /**
+     * 创建在线程池中并行解码的顺序Stream，游标只读取原始bson，调用线程消费时继续拉取后续批次
+     *
+     * @param iterable 原始bson的查询
+     * @param decoder  实体的codec
+     * @param executor 解码使用的线程池
+     * @param ordered  是否按游标顺序返回，false时按解码完成顺序返回
+     * @return
+     */
+    public static <T> Stream<T> parallel(MongoIterable<RawBsonDocument> iterable, Decoder<T> decoder, Executor executor, boolean ordered) {
+        int parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+        ParallelDecodeIterator<T> iterator = new ParallelDecodeIterator<>(iterable.iterator(), decoder, executor, ordered, Math.max(2, parallelism * 2));
+        int characteristics = ordered ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, characteristics), false).onClose(iterator::close);
+    }
+
+    private static class CursorSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+        private final MongoCursor<T> cursor;
+        private boolean closed;
+
+        CursorSpliterator(MongoCursor<T> cursor) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (cursor.hasNext()) {
+                    action.accept(cursor.next());
+                    return true;
+                }
+            } catch (RuntimeException | Error e) {
+                close();
+                throw e;
+            }
+            close();
+            return false;
+        }
+
+        void close() {
+            if (!closed) {
+                closed = true;
+                cursor.close();
+            }
+        }
+    }
+}
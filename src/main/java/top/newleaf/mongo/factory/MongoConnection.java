@@ -13,6 +13,60 @@ public class MongoConnection {
 
     private boolean isDefault = false;
 
+    /**
+     * 以下连接池、超时和socket配置为null时使用驱动默认值，uri中的同名参数优先
+     */
+    private Integer maxPoolSize;
+
+    private Integer minPoolSize;
+
+    /**
+     * 等待连接的线程数上限为maxPoolSize的倍数
+     */
+    private Integer waitQueueMultiple;
+
+    /**
+     * 等待连接的最长毫秒数
+     */
+    private Integer maxWaitTime;
+
+    private Integer maxConnectionIdleTime;
+
+    private Integer maxConnectionLifeTime;
+
+    private Integer connectTimeout;
+
+    private Integer socketTimeout;
+
+    private Integer serverSelectionTimeout;
+
+    private Integer heartbeatFrequency;
+
+    /**
+     * 已被驱动废弃，驱动默认开启，配置后只记录警告
+     */
+    private Boolean socketKeepAlive;
+
+    private Boolean sslEnabled;
+
+    /**
+     * 逗号分隔的压缩算法，支持zlib和snappy，snappy需要引入snappy-java
+     */
+    private String compressors;
+
+    private Integer zlibCompressionLevel;
+
+    private String applicationName;
+
+    /**
+     * 读偏好、最大延迟(秒)和读关注，作用于该连接的数据库，实体的@ReadRouting可覆盖
+     */
+    private String readPreference;
+
+    private Long maxStaleness;
+
+    private String readConcern;
+
     public MongoConnection() {
     }
 
@@ -55,6 +109,150 @@ public class MongoConnection {
         isDefault = aDefault;
     }
 
+    public Integer getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(Integer maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public Integer getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    public void setMinPoolSize(Integer minPoolSize) {
+        this.minPoolSize = minPoolSize;
+    }
+
+    public Integer getWaitQueueMultiple() {
+        return waitQueueMultiple;
+    }
+
+    public void setWaitQueueMultiple(Integer waitQueueMultiple) {
+        this.waitQueueMultiple = waitQueueMultiple;
+    }
+
+    public Integer getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public void setMaxWaitTime(Integer maxWaitTime) {
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    public Integer getMaxConnectionIdleTime() {
+        return maxConnectionIdleTime;
+    }
+
+    public void setMaxConnectionIdleTime(Integer maxConnectionIdleTime) {
+        this.maxConnectionIdleTime = maxConnectionIdleTime;
+    }
+
+    public Integer getMaxConnectionLifeTime() {
+        return maxConnectionLifeTime;
+    }
+
+    public void setMaxConnectionLifeTime(Integer maxConnectionLifeTime) {
+        this.maxConnectionLifeTime = maxConnectionLifeTime;
+    }
+
+    public Integer getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Integer connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Integer getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(Integer socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public Integer getServerSelectionTimeout() {
+        return serverSelectionTimeout;
+    }
+
+    public void setServerSelectionTimeout(Integer serverSelectionTimeout) {
+        this.serverSelectionTimeout = serverSelectionTimeout;
+    }
+
+    public Integer getHeartbeatFrequency() {
+        return heartbeatFrequency;
+    }
+
+    public void setHeartbeatFrequency(Integer heartbeatFrequency) {
+        this.heartbeatFrequency = heartbeatFrequency;
+    }
+
+    public Boolean getSocketKeepAlive() {
+        return socketKeepAlive;
+    }
+
+    public void setSocketKeepAlive(Boolean socketKeepAlive) {
+        this.socketKeepAlive = socketKeepAlive;
+    }
+
+    public Boolean getSslEnabled() {
+        return sslEnabled;
+    }
+
+    public void setSslEnabled(Boolean sslEnabled) {
+        this.sslEnabled = sslEnabled;
+    }
+
+    public String getCompressors() {
+        return compressors;
+    }
+
+    public void setCompressors(String compressors) {
+        this.compressors = compressors;
+    }
+
+    public Integer getZlibCompressionLevel() {
+        return zlibCompressionLevel;
+    }
+
+    public void setZlibCompressionLevel(Integer zlibCompressionLevel) {
+        this.zlibCompressionLevel = zlibCompressionLevel;
+    }
+
+    public String getApplicationName() {
+        return applicationName;
+    }
+
+    public void setApplicationName(String applicationName) {
+        this.applicationName = applicationName;
+    }
+
+    public String getReadPreference() {
+        return readPreference;
+    }
+
+    public void setReadPreference(String readPreference) {
+        this.readPreference = readPreference;
+    }
+
+    public Long getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    public void setMaxStaleness(Long maxStaleness) {
+        this.maxStaleness = maxStaleness;
+    }
+
+    public String getReadConcern() {
+        return readConcern;
+    }
+
+    public void setReadConcern(String readConcern) {
+        this.readConcern = readConcern;
+    }
+
     @Override
     public String toString() {
         final StringBuffer sb = new StringBuffer("{");
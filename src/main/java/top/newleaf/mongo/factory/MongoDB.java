@@ -1,18 +1,76 @@
 package top.newleaf.mongo.factory;
 
+import com.mongodb.ReadPreference;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
 import org.bson.Document;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import top.newleaf.mongo.bulk.WriteBehindConfig;
+import top.newleaf.mongo.bulk.WriteErrorHandler;
+import top.newleaf.mongo.cache.CacheConfig;
+import top.newleaf.mongo.codec.BeanCodec;
+import top.newleaf.mongo.codec.Trackable;
+import top.newleaf.mongo.index.IndexDefinition;
+import top.newleaf.mongo.index.IndexManager;
+import top.newleaf.mongo.index.IndexReport;
+import top.newleaf.mongo.metrics.MongoMetrics;
+import top.newleaf.mongo.read.ReadConfig;
+import top.newleaf.mongo.transfer.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 /**
  * @author chengshx
  */
 public class MongoDB {
 
+    private static final String ID_FIELD = "_id";
+    /**
+     * 流式查询默认每批拉取的文档数
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
     private String name;
 
     private MongoDatabase mongoDatabase;
 
+    /**
+     * 创建连接时的配置，用于按需创建异步客户端
+     */
+    private MongoConnection connection;
+
+    private volatile AsyncMongoDB asyncMongoDB;
+
+    private final ConcurrentHashMap<String, ProjectedCollection<?>> projections = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Class<?>, CachedCollection<?>> caches = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Class<?>, WriteBehindCollection<?>> writeBehinds = new ConcurrentHashMap<>();
+
+    /**
+     * 已提交过索引处理的实体
+     */
+    private final Set<Class<?>> indexedClasses = ConcurrentHashMap.newKeySet();
+
     public MongoDB() {
     }
 
@@ -21,6 +79,11 @@ public class MongoDB {
         this.mongoDatabase = mongoDatabase;
     }
 
+    public MongoDB(MongoConnection connection, MongoDatabase mongoDatabase) {
+        this(connection.getName(), mongoDatabase);
+        this.connection = connection;
+    }
+
     public String getName() {
         return name;
     }
@@ -35,6 +98,44 @@ public class MongoDB {
 
     public void setMongoDatabase(MongoDatabase mongoDatabase) {
         this.mongoDatabase = mongoDatabase;
+        projections.clear();
+        caches.clear();
+        indexedClasses.clear();
+        closeWriteBehinds();
+        asyncMongoDB = null;
+    }
+
+    public MongoConnection getConnection() {
+        return connection;
+    }
+
+    public void setConnection(MongoConnection connection) {
+        this.connection = connection;
+        asyncMongoDB = null;
+    }
+
+    /**
+     * 获取异步的数据库，首次使用时按连接配置创建异步客户端，codec与同步的数据库相同
+     * <p>
+     * 需要引入mongodb-driver-async依赖
+     *
+     * @return
+     */
+    public AsyncMongoDB async() {
+        AsyncMongoDB async = asyncMongoDB;
+        if (async == null) {
+            synchronized (this) {
+                async = asyncMongoDB;
+                if (async == null) {
+                    if (connection == null) {
+                        throw new IllegalStateException(name + "未配置连接信息，无法创建异步客户端");
+                    }
+                    async = new AsyncMongoDB(this, connection, mongoDatabase.getCodecRegistry());
+                    asyncMongoDB = async;
+                }
+            }
+        }
+        return async;
     }
 
     /**
@@ -46,11 +147,95 @@ public class MongoDB {
     public <T> MongoCollection<T> getCollection(Class<T> clazz) {
         String collName = MongoFactory.getInstance().getCollectionName(clazz);
         if (collName != null) {
-            return getCollection(collName, clazz);
+            MongoCollection<T> collection = getCollection(collName, clazz);
+            if (!indexedClasses.contains(clazz)) {
+                submitIndexes(clazz, collection);
+            }
+            return getReadConfig(clazz).apply(collection);
         }
         return null;
     }
 
+    /**
+     * 实体的读取路由逐项覆盖连接的配置
+     *
+     * @param clazz
+     * @return
+     */
+    ReadConfig getReadConfig(Class<?> clazz) {
+        ReadConfig readConfig = MongoFactory.getInstance().getReadConfig(clazz);
+        return connection == null || readConfig.isEmpty() ? readConfig : readConfig.merge(MongoFactory.getReadConfig(connection));
+    }
+
+    /**
+     * 获取自定义解析器集合，本次调用的读取路由逐项覆盖实体和连接的配置
+     *
+     * @param clazz
+     * @param readConfig
+     * @return
+     */
+    public <T> MongoCollection<T> getCollection(Class<T> clazz, ReadConfig readConfig) {
+        MongoCollection<T> collection = getCollection(clazz);
+        return collection == null ? null : readConfig.merge(getReadConfig(clazz)).apply(collection);
+    }
+
+    /**
+     * 获取指定读偏好的自定义解析器集合
+     *
+     * @param clazz
+     * @param readPreference
+     * @return
+     */
+    public <T> MongoCollection<T> getCollection(Class<T> clazz, ReadPreference readPreference) {
+        MongoCollection<T> collection = getCollection(clazz);
+        return collection == null ? null : collection.withReadPreference(readPreference);
+    }
+
+    /**
+     * 创建实体注解声明而服务端不存在的索引
+     *
+     * @param clazz
+     * @return 创建的索引名
+     */
+    public List<String> ensureIndexes(Class<?> clazz) {
+        return IndexManager.ensureIndexes(getIndexCollection(clazz), IndexDefinition.of(clazz));
+    }
+
+    /**
+     * 检查实体注解声明的索引是否存在以及集合中未使用的索引
+     *
+     * @param clazz
+     * @return
+     */
+    public IndexReport verifyIndexes(Class<?> clazz) {
+        return IndexManager.verify(getIndexCollection(clazz), IndexDefinition.of(clazz));
+    }
+
+    /**
+     * 按MongoFactory的索引模式在后台处理实体的索引，每个实体只处理一次
+     *
+     * @param clazz
+     * @return
+     */
+    CompletableFuture<Void> submitIndexes(Class<?> clazz) {
+        return submitIndexes(clazz, getIndexCollection(clazz));
+    }
+
+    private CompletableFuture<Void> submitIndexes(Class<?> clazz, MongoCollection<?> collection) {
+        IndexManager indexManager = MongoFactory.getInstance().getIndexManager();
+        if (indexManager == null || !indexedClasses.add(clazz)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return indexManager.submit(collection, clazz);
+    }
+
+    /**
+     * 索引操作不受实体读取路由影响
+     */
+    private MongoCollection<?> getIndexCollection(Class<?> clazz) {
+        return getCollection(MongoFactory.getInstance().getCollectionName(clazz), clazz);
+    }
+
     /**
      * 获取默认集合
      *
@@ -74,4 +259,316 @@ public class MongoDB {
         }
         return null;
     }
+
+    /**
+     * 流式查询全部文档，按默认批次大小拉取
+     *
+     * @param clazz
+     * @return
+     */
+    public <T> Stream<T> stream(Class<T> clazz) {
+        return stream(clazz, new BsonDocument(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * 流式查询符合条件的文档，内存中只保留当前批次，适合导出和全量处理
+     * <p>
+     * 遍历结束时自动关闭游标，提前结束时需使用try-with-resources关闭Stream
+     *
+     * @param clazz
+     * @param filter
+     * @param batchSize 每批拉取的文档数
+     * @return
+     */
+    public <T> Stream<T> stream(Class<T> clazz, Bson filter, int batchSize) {
+        return CursorStream.of(getCollection(clazz).find(filter).batchSize(batchSize));
+    }
+
+    /**
+     * 流式查询并在线程池中并行解码，适合解码耗时的全量处理
+     *
+     * @param clazz
+     * @param filter
+     * @param batchSize 每批拉取的文档数
+     * @param executor  解码使用的线程池
+     * @param ordered   是否按游标顺序返回
+     * @return
+     */
+    public <T> Stream<T> parallelStream(Class<T> clazz, Bson filter, int batchSize, Executor executor, boolean ordered) {
+        MongoCollection<T> collection = getCollection(clazz);
+        Codec<T> codec = collection.getCodecRegistry().get(clazz);
+        return CursorStream.parallel(collection.withDocumentClass(RawBsonDocument.class).find(filter).batchSize(batchSize), codec, executor, ordered);
+    }
+
+    /**
+     * 获取只查询和解码部分字段的集合视图
+     *
+     * @param clazz
+     * @param fields 字段名或列名，只支持顶层字段
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ProjectedCollection<T> project(Class<T> clazz, String... fields) {
+        String[] sortedFields = fields.clone();
+        Arrays.sort(sortedFields);
+        String key = clazz.getName() + ":" + String.join(",", sortedFields);
+        ProjectedCollection<?> projected = projections.get(key);
+        if (projected == null) {
+            MongoCollection<T> collection = getCollection(clazz);
+            projected = new ProjectedCollection<>(collection, clazz, Arrays.asList(sortedFields));
+            ProjectedCollection<?> exist = projections.putIfAbsent(key, projected);
+            if (exist != null) {
+                projected = exist;
+            }
+        }
+        return (ProjectedCollection<T>) projected;
+    }
+
+    /**
+     * 获取带按id缓存的集合视图，实体需标注@Cached或在mongo.xml中配置缓存
+     *
+     * @param clazz
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CachedCollection<T> cached(Class<T> clazz) {
+        CachedCollection<?> cached = caches.get(clazz);
+        if (cached == null) {
+            CacheConfig config = MongoFactory.getInstance().getCacheConfig(clazz);
+            if (config == null) {
+                throw new IllegalArgumentException(clazz.getName() + "未开启缓存");
+            }
+            cached = new CachedCollection<>(getCollection(clazz), clazz, config);
+            CachedCollection<?> exist = caches.putIfAbsent(clazz, cached);
+            if (exist != null) {
+                cached = exist;
+            } else {
+                MongoMetrics.registerCache(name + ":" + clazz.getName(), cached.getCache());
+            }
+        }
+        return (CachedCollection<T>) cached;
+    }
+
+    /**
+     * 使实体按id缓存的文档失效，未开启缓存时忽略；绕过save、bulkInsert、writeBehind等方法直接写入集合后调用
+     *
+     * @param clazz
+     * @param id    id字段类型的值
+     */
+    public void invalidateCache(Class<?> clazz, Object id) {
+        CachedCollection<?> cached = caches.get(clazz);
+        if (cached != null) {
+            cached.invalidate(id);
+        }
+    }
+
+    /**
+     * 清空实体的按id缓存，未开启缓存时忽略
+     *
+     * @param clazz
+     */
+    public void clearCache(Class<?> clazz) {
+        CachedCollection<?> cached = caches.get(clazz);
+        if (cached != null) {
+            cached.getCache().clear();
+        }
+    }
+
+    /**
+     * 已创建的缓存视图
+     *
+     * @param clazz
+     * @return 未创建时返回null
+     */
+    CachedCollection<?> getCachedIfPresent(Class<?> clazz) {
+        return caches.get(clazz);
+    }
+
+    /**
+     * 获取异步批量写入的集合视图，使用默认配置
+     *
+     * @param clazz
+     * @return
+     */
+    public <T> WriteBehindCollection<T> writeBehind(Class<T> clazz) {
+        return writeBehind(clazz, new WriteBehindConfig(), null);
+    }
+
+    /**
+     * 获取异步批量写入的集合视图，每个实体只创建一次，之后的配置不生效
+     *
+     * @param clazz
+     * @param config
+     * @param errorHandler 批量写入失败的回调，为null时只记录日志
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> WriteBehindCollection<T> writeBehind(Class<T> clazz, WriteBehindConfig config, WriteErrorHandler<T> errorHandler) {
+        WriteBehindCollection<?> writeBehind = writeBehinds.get(clazz);
+        if (writeBehind == null) {
+            synchronized (writeBehinds) {
+                writeBehind = writeBehinds.get(clazz);
+                if (writeBehind == null) {
+                    writeBehind = new WriteBehindCollection<>(this, getCollection(clazz), clazz, config, errorHandler);
+                    writeBehinds.put(clazz, writeBehind);
+                }
+            }
+        }
+        return (WriteBehindCollection<T>) writeBehind;
+    }
+
+    /**
+     * 关闭全部异步批量写入的集合视图，写入队列中剩余的操作
+     */
+    public void closeWriteBehinds() {
+        synchronized (writeBehinds) {
+            for (WriteBehindCollection<?> writeBehind : writeBehinds.values()) {
+                writeBehind.close();
+            }
+            writeBehinds.clear();
+        }
+    }
+
+    /**
+     * 批量插入，在调用线程中借助线程缓冲区将实体编码为RawBsonDocument，驱动发送时只复制字节
+     * <p>
+     * _id为空时在客户端生成；多个线程并发调用时编码也并行进行；写入后使缓存中相同id的文档失效
+     *
+     * @param clazz
+     * @param entities
+     * @param ordered  为false时某个文档失败不影响其余文档
+     */
+    public <T> void bulkInsert(Class<T> clazz, List<? extends T> entities, boolean ordered) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        MongoCollection<T> collection = getCollection(clazz);
+        BeanCodec<T> codec = getBeanCodec(collection.getCodecRegistry(), clazz);
+        List<RawBsonDocument> documents = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            codec.generateIdIfAbsentFromDocument(entity);
+            documents.add(codec.toRawDocument(entity));
+        }
+        try {
+            collection.withDocumentClass(RawBsonDocument.class).insertMany(documents, new InsertManyOptions().ordered(ordered));
+        } finally {
+            CachedCollection<?> cached = caches.get(clazz);
+            if (cached != null) {
+                for (RawBsonDocument document : documents) {
+                    BsonValue key = document.get(ID_FIELD);
+                    if (key != null) {
+                        cached.getCache().invalidate(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 将实体对应集合中符合条件的文档导出到文件，格式按扩展名判断(.json/.ndjson/.jsonl为NDJSON，其余为BSON)
+     *
+     * @param clazz
+     * @param filter
+     * @param file
+     * @param config
+     * @return
+     * @throws IOException
+     */
+    public <T> TransferProgress exportTo(Class<T> clazz, Bson filter, Path file, TransferConfig config) throws IOException {
+        try (DocumentSink sink = new FileDocumentSink(file, config.getBufferSize())) {
+            return new DataExporter(config).export(getCollection(clazz), filter, sink);
+        }
+    }
+
+    /**
+     * 从文件导入，原始文档不经过实体直接无序批量插入，导出再导入的数据与原数据一致；完成后清空实体的缓存
+     *
+     * @param clazz
+     * @param file
+     * @param config
+     * @return
+     * @throws IOException
+     */
+    public <T> TransferProgress importFrom(Class<T> clazz, Path file, TransferConfig config) throws IOException {
+        return importFrom(clazz, file, config, false);
+    }
+
+    /**
+     * 从文件导入并无序批量插入
+     *
+     * @param clazz
+     * @param file
+     * @param config
+     * @param convert 为true时在工作线程中解码为实体再编码，可借助实体映射完成列的迁移；
+     *                未映射及@Transient的列会丢失，24位十六进制的String _id会转为ObjectId
+     * @return
+     * @throws IOException
+     */
+    public <T> TransferProgress importFrom(Class<T> clazz, Path file, TransferConfig config, boolean convert) throws IOException {
+        try (DocumentSource source = new FileDocumentSource(file, config.getBufferSize())) {
+            DataImporter importer = new DataImporter(config);
+            if (!convert) {
+                try {
+                    return importer.importTo(source, BulkTarget.of(getCollection(clazz).withDocumentClass(RawBsonDocument.class)));
+                } finally {
+                    clearCache(clazz);
+                }
+            }
+            BeanCodec<T> codec = getBeanCodec(getCollection(clazz).getCodecRegistry(), clazz);
+            return importer.importTo(source, raw -> raw.decode(codec), entities -> bulkInsert(clazz, entities, false));
+        }
+    }
+
+    /**
+     * 保存实体，解码得到的Trackable实体只发送修改的列，其余实体按id整体替换，不存在时插入；开启缓存时使缓存失效
+     *
+     * @param entity
+     * @return 实体无修改时不访问数据库，返回null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> UpdateResult save(T entity) {
+        Class<T> clazz = (Class<T>) entity.getClass();
+        CachedCollection<T> cached = (CachedCollection<T>) caches.get(clazz);
+        if (cached != null) {
+            return cached.save(entity);
+        }
+        MongoCollection<T> collection = getCollection(clazz);
+        return save(collection, getBeanCodec(collection.getCodecRegistry(), clazz), entity);
+    }
+
+    static <T> UpdateResult save(MongoCollection<T> collection, BeanCodec<T> codec, T entity) {
+        UpdateResult result;
+        if (entity instanceof Trackable && ((Trackable) entity).getSnapshot() != null) {
+            BsonDocument update = codec.getUpdate(entity);
+            if (update.isEmpty()) {
+                return null;
+            }
+            result = collection.updateOne(Filters.eq(ID_FIELD, codec.getDocumentId(entity)), update);
+        } else {
+            codec.generateIdIfAbsentFromDocument(entity);
+            result = collection.replaceOne(Filters.eq(ID_FIELD, codec.getDocumentId(entity)), entity, new UpdateOptions().upsert(true));
+        }
+        // 保存成功后以当前值作为新的快照
+        codec.track(entity);
+        return result;
+    }
+
+    /**
+     * 获取实体使用的BeanCodec，注册的不是BeanCodec时按实体创建
+     *
+     * @param codecRegistry 集合的codec
+     * @param clazz
+     * @return
+     */
+    static <T> BeanCodec<T> getBeanCodec(CodecRegistry codecRegistry, Class<T> clazz) {
+        try {
+            Codec<T> codec = codecRegistry.get(clazz);
+            if (codec instanceof BeanCodec) {
+                return (BeanCodec<T>) codec;
+            }
+        } catch (CodecConfigurationException e) {
+            // 未注册codec
+        }
+        return new BeanCodec<>(clazz, codecRegistry);
+    }
 }
@@ -12,12 +12,26 @@ import org.dom4j.Node;
 import org.dom4j.io.SAXReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import top.newleaf.mongo.cache.CacheConfig;
+import top.newleaf.mongo.cache.Cached;
+import top.newleaf.mongo.codec.BeanCodecProvider;
+import top.newleaf.mongo.codec.Generated;
+import top.newleaf.mongo.index.IndexManager;
+import top.newleaf.mongo.index.IndexMode;
+import top.newleaf.mongo.metrics.MetricsCommandListener;
+import top.newleaf.mongo.metrics.MongoMetrics;
+import top.newleaf.mongo.read.ReadConfig;
+import top.newleaf.mongo.read.ReadRouting;
 import top.newleaf.mongo.scanner.BeanCodecScanAction;
 import top.newleaf.mongo.scanner.ClassScanner;
+import top.newleaf.mongo.scanner.CodecIndex;
 
 import javax.persistence.Table;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -30,6 +44,33 @@ public class MongoFactory {
     private static Map<String, MongoDB> dbs = new HashMap<>();
     private static MongoFactory instance = new MongoFactory();
     private ConcurrentHashMap<Class<?>, String> tables = new ConcurrentHashMap<Class<?>, String>();
+    private final BeanCodecProvider beanCodecProvider = new BeanCodecProvider();
+    /**
+     * 通过注册类或registerCodecs注册的codec，与扫描到的codec一同参与选择，key为codec类
+     */
+    private final Map<Class<?>, Codec<?>> registeredCodecs = new ConcurrentHashMap<>();
+    /**
+     * mongo.xml中配置的实体缓存，key为实体类名
+     */
+    private final Map<String, CacheConfig> cacheConfigs = new ConcurrentHashMap<>();
+    /**
+     * 实体的读取路由，未配置的实体为空配置
+     */
+    private final Map<Class<?>, ReadConfig> readConfigs = new ConcurrentHashMap<>();
+    /**
+     * 所有连接共用，未开启统计时不记录
+     */
+    private final MetricsCommandListener metricsListener = new MetricsCommandListener();
+    /**
+     * key为连接uri
+     */
+    private final Map<MongoClientURI, MongoClient> clients = new HashMap<>();
+    /**
+     * 默认不处理注解索引，需在mongo.xml或setIndexMode中显式开启
+     */
+    private IndexMode indexMode = IndexMode.NONE;
+    private int indexThreads = 4;
+    private volatile IndexManager indexManager;
     private MongoDB defaultDb;
     private boolean hasInit = false;
 
@@ -56,6 +97,26 @@ public class MongoFactory {
         return hasInit;
     }
 
+    /**
+     * 按需创建codec的provider，未标注@Table的实体可在此注册
+     *
+     * @return
+     */
+    public BeanCodecProvider getBeanCodecProvider() {
+        return beanCodecProvider;
+    }
+
+    /**
+     * 注册codec，如CodecProcessor生成的GeneratedCodecRegistry.codecs()，需在创建连接前调用
+     *
+     * @param codecs
+     */
+    public void registerCodecs(Collection<? extends Codec<?>> codecs) {
+        for (Codec<?> codec : codecs) {
+            registeredCodecs.putIfAbsent(codec.getClass(), codec);
+        }
+    }
+
     public String getCollectionName(Class<?> clazz) {
         String collName;
         collName = tables.get(clazz);
@@ -72,6 +133,56 @@ public class MongoFactory {
         return collName;
     }
 
+    /**
+     * 获取实体的缓存配置，mongo.xml中的配置优先于@Cached
+     *
+     * @param clazz
+     * @return 未开启缓存时返回null
+     */
+    public CacheConfig getCacheConfig(Class<?> clazz) {
+        CacheConfig config = cacheConfigs.get(clazz.getName());
+        if (config == null) {
+            Cached cached = clazz.getAnnotation(Cached.class);
+            if (cached != null) {
+                config = CacheConfig.of(cached);
+            }
+        }
+        return config;
+    }
+
+    /**
+     * 设置实体的缓存配置，需在首次调用MongoDB.cached前设置
+     *
+     * @param clazz
+     * @param config
+     */
+    public void setCacheConfig(Class<?> clazz, CacheConfig config) {
+        cacheConfigs.put(clazz.getName(), config);
+    }
+
+    /**
+     * 获取实体的读取路由，未设置时取@ReadRouting
+     *
+     * @param clazz
+     * @return 未配置时返回空配置
+     */
+    public ReadConfig getReadConfig(Class<?> clazz) {
+        return readConfigs.computeIfAbsent(clazz, key -> {
+            ReadRouting routing = key.getAnnotation(ReadRouting.class);
+            return routing == null ? new ReadConfig() : ReadConfig.of(routing);
+        });
+    }
+
+    /**
+     * 设置实体的读取路由，优先于@ReadRouting
+     *
+     * @param clazz
+     * @param config
+     */
+    public void setReadConfig(Class<?> clazz, ReadConfig config) {
+        readConfigs.put(clazz, config);
+    }
+
     /**
      * mongodb连接初始化
      * @param confPath
@@ -87,8 +198,26 @@ public class MongoFactory {
                     packages.add(packageNode.getText());
                 }
             }
+            // 生成的注册类直接提供codec，无需读取索引或扫描
+            for (Node registryNode : document.selectNodes("mongo/registries/registry")) {
+                registerCodecs(loadRegistry(registryNode.getText().trim()));
+            }
             BeanCodecScanAction scanAction = new BeanCodecScanAction();
-            ClassScanner.scan(packages, true, scanAction);
+            // 未配置扫描路径时完全由BeanCodecProvider按需创建codec
+            if (!packages.isEmpty()) {
+                // 优先使用编译期生成的codec索引，没有索引的jar和目录(未启用注解处理编译)继续扫描
+                Set<String> indexedRoots = CodecIndex.scan(packages, true, scanAction);
+                if (!indexedRoots.isEmpty()) {
+                    LOGGER.info("load codecs from index : {}", indexedRoots);
+                }
+                ClassScanner.scan(packages, true, scanAction, indexedRoots);
+            }
+            // 解析统计配置
+            parseMetrics(document);
+            // 解析索引配置
+            parseIndexes(document);
+            // 解析实体缓存配置
+            cacheConfigs.putAll(parseCacheConfigs(document));
             // 解析mongo数据源配置
             List<MongoConnection> connections = parseMongoConnection(document);
             // 创建mongo连接
@@ -106,28 +235,294 @@ public class MongoFactory {
      * @param codecSet codec集合
      */
     public void createConnections(List<MongoConnection> connections, Set<? extends Codec> codecSet) {
+        List<CompletableFuture<Void>> indexFutures = null;
         if(!hasInit && !connections.isEmpty()) {
             synchronized (instance) {
                 if (!hasInit) {
                     hasInit = true;
-                    for(MongoConnection connection : connections) {
-                        MongoClientOptions.Builder build = new MongoClientOptions.Builder();
-                        if (codecSet.size() > 0) {
-                            CodecRegistry codecRegistry = CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(codecSet.toArray(new Codec[codecSet.size()])), MongoClient.getDefaultCodecRegistry());
-                            build.codecRegistry(codecRegistry);
+                    try {
+                        // 扫描和注册的codec优先，其余@Table实体首次使用时创建codec
+                        List<Codec<?>> candidates = new ArrayList<>(registeredCodecs.values());
+                        for (Codec<?> codec : codecSet) {
+                            candidates.add(codec);
+                        }
+                        List<Codec<?>> codecs = selectCodecs(candidates);
+                        CodecRegistry codecRegistry;
+                        if (codecs.size() > 0) {
+                            codecRegistry = CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(codecs),
+                                    CodecRegistries.fromProviders(beanCodecProvider), MongoClient.getDefaultCodecRegistry());
+                        } else {
+                            codecRegistry = CodecRegistries.fromRegistries(CodecRegistries.fromProviders(beanCodecProvider), MongoClient.getDefaultCodecRegistry());
                         }
-                        MongoClientURI mongoURI = new MongoClientURI(connection.getUri(), build);
-                        MongoClient client = new MongoClient(mongoURI);
-                        MongoDatabase db = client.getDatabase(connection.getDb());
-                        MongoDB mongoDB = new MongoDB(connection.getName(), db);
-                        dbs.put(connection.getName(), mongoDB);
-                        if(connection.getIsDefault()) {
-                            defaultDb = mongoDB;
+                        indexManager = new IndexManager(indexMode, indexThreads);
+                        for(MongoConnection connection : connections) {
+                            MongoClient client = getClient(connection, codecRegistry);
+                            // 共用客户端的连接各自设置读取路由
+                            MongoDatabase db = getReadConfig(connection).apply(client.getDatabase(connection.getDb()));
+                            MongoDB mongoDB = new MongoDB(connection, db);
+                            dbs.put(connection.getName(), mongoDB);
+                            if(connection.getIsDefault()) {
+                                defaultDb = mongoDB;
+                            }
                         }
+                        indexFutures = prepareIndexes(codecs);
+                    } catch (RuntimeException e) {
+                        // 释放已创建的客户端和索引线程池，之后可重新创建连接
+                        close();
+                        throw e;
                     }
                 }
             }
         }
+        // 在锁外等待，不阻塞close及其他线程
+        if (indexFutures != null) {
+            awaitIndexes(indexFutures);
+        }
+    }
+
+    /**
+     * 每个实体只保留一个codec，手写codec优先于CodecProcessor生成(@Generated)的codec，
+     * 同为手写或同为生成时按codec类名取第一个，同一codec类既被扫描又被注册时只保留一个
+     *
+     * @param codecSet
+     * @return
+     */
+    static List<Codec<?>> selectCodecs(Collection<? extends Codec> codecSet) {
+        List<Codec<?>> sorted = new ArrayList<>();
+        for (Codec<?> codec : codecSet) {
+            sorted.add(codec);
+        }
+        sorted.sort(Comparator.comparing(codec -> codec.getClass().getName()));
+        Map<Class<?>, Codec<?>> selected = new LinkedHashMap<>();
+        for (Codec<?> codec : sorted) {
+            Class<?> clazz = codec.getEncoderClass();
+            Codec<?> existing = selected.get(clazz);
+            if (existing == null) {
+                selected.put(clazz, codec);
+                continue;
+            }
+            if (existing.getClass() == codec.getClass()) {
+                continue;
+            }
+            boolean generated = codec.getClass().isAnnotationPresent(Generated.class);
+            boolean existingGenerated = existing.getClass().isAnnotationPresent(Generated.class);
+            if (existingGenerated && !generated) {
+                selected.put(clazz, codec);
+            } else if (existingGenerated == generated) {
+                LOGGER.warn("实体存在多个codec，使用 {}，忽略 {}", existing.getClass().getName(), codec.getClass().getName());
+            }
+        }
+        return new ArrayList<>(selected.values());
+    }
+
+    /**
+     * 调用CodecProcessor生成的注册类的codecs()
+     *
+     * @param className 注册类全类名
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    static List<Codec<?>> loadRegistry(String className) {
+        try {
+            Class<?> registry = Class.forName(className, true, Thread.currentThread().getContextClassLoader());
+            return (List<Codec<?>>) registry.getMethod("codecs").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("加载codec注册类失败 : " + className, e);
+        }
+    }
+
+    /**
+     * 扫描到codec的@Table实体在默认库中并行处理索引，其余实体及其他库在首次getCollection时处理
+     *
+     * @param codecs
+     * @return 各实体的处理任务
+     */
+    private List<CompletableFuture<Void>> prepareIndexes(List<Codec<?>> codecs) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        if (defaultDb == null || indexManager.getMode() == IndexMode.NONE) {
+            return futures;
+        }
+        for (Codec<?> codec : codecs) {
+            Class<?> clazz = codec.getEncoderClass();
+            if (clazz.isAnnotationPresent(Table.class)) {
+                futures.add(defaultDb.submitIndexes(clazz));
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * 等待启动时的索引处理完成，失败只记录日志，不影响连接的使用
+     *
+     * @param futures
+     */
+    static void awaitIndexes(List<CompletableFuture<Void>> futures) {
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (CancellationException | CompletionException e) {
+                LOGGER.error("启动时处理索引失败", e);
+            }
+        }
+    }
+
+    /**
+     * 同步和异步客户端共用的命令统计监听器
+     *
+     * @return
+     */
+    MetricsCommandListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * 处理注解索引的线程池，未创建连接时返回null
+     *
+     * @return
+     */
+    public IndexManager getIndexManager() {
+        return indexManager;
+    }
+
+    /**
+     * 设置索引处理方式，需在创建连接前设置
+     *
+     * @param indexMode
+     */
+    public void setIndexMode(IndexMode indexMode) {
+        this.indexMode = indexMode;
+    }
+
+    /**
+     * uri和连接配置都相同的连接共用一个客户端，连接池和监控线程只创建一次；uri相同但配置不同时各自创建客户端
+     *
+     * @param connection
+     * @param codecRegistry
+     * @return
+     */
+    private MongoClient getClient(MongoConnection connection, CodecRegistry codecRegistry) {
+        if (connection.getSocketKeepAlive() != null) {
+            LOGGER.warn("socketKeepAlive已废弃，驱动默认开启keepAlive，忽略连接{}的配置", connection.getName());
+        }
+        MongoClientURI mongoURI = getClientURI(connection, codecRegistry);
+        MongoClient client = clients.get(mongoURI);
+        if (client == null) {
+            for (MongoClientURI existing : clients.keySet()) {
+                if (existing.getURI().equals(mongoURI.getURI())) {
+                    LOGGER.warn("连接{}与相同uri的连接配置不同，创建独立的客户端", connection.getName());
+                    break;
+                }
+            }
+            client = new MongoClient(mongoURI);
+            clients.put(mongoURI, client);
+        }
+        return client;
+    }
+
+    /**
+     * 客户端的完整配置，也作为共用客户端的key
+     *
+     * @param connection
+     * @param codecRegistry
+     * @return
+     */
+    MongoClientURI getClientURI(MongoConnection connection, CodecRegistry codecRegistry) {
+        return new MongoClientURI(withCompressors(connection), buildOptions(connection, codecRegistry));
+    }
+
+    static ReadConfig getReadConfig(MongoConnection connection) {
+        return new ReadConfig(connection.getReadPreference(), connection.getMaxStaleness(), connection.getReadConcern());
+    }
+
+    private MongoClientOptions.Builder buildOptions(MongoConnection connection, CodecRegistry codecRegistry) {
+        MongoClientOptions.Builder build = new MongoClientOptions.Builder();
+        build.codecRegistry(codecRegistry);
+        // 统计可在运行时通过MongoMetrics开关，监听器始终注册
+        build.addCommandListener(metricsListener);
+        if (connection.getMaxPoolSize() != null) {
+            build.connectionsPerHost(connection.getMaxPoolSize());
+        }
+        if (connection.getMinPoolSize() != null) {
+            build.minConnectionsPerHost(connection.getMinPoolSize());
+        }
+        if (connection.getWaitQueueMultiple() != null) {
+            build.threadsAllowedToBlockForConnectionMultiplier(connection.getWaitQueueMultiple());
+        }
+        if (connection.getMaxWaitTime() != null) {
+            build.maxWaitTime(connection.getMaxWaitTime());
+        }
+        if (connection.getMaxConnectionIdleTime() != null) {
+            build.maxConnectionIdleTime(connection.getMaxConnectionIdleTime());
+        }
+        if (connection.getMaxConnectionLifeTime() != null) {
+            build.maxConnectionLifeTime(connection.getMaxConnectionLifeTime());
+        }
+        if (connection.getConnectTimeout() != null) {
+            build.connectTimeout(connection.getConnectTimeout());
+        }
+        if (connection.getSocketTimeout() != null) {
+            build.socketTimeout(connection.getSocketTimeout());
+        }
+        if (connection.getServerSelectionTimeout() != null) {
+            build.serverSelectionTimeout(connection.getServerSelectionTimeout());
+        }
+        if (connection.getHeartbeatFrequency() != null) {
+            build.heartbeatFrequency(connection.getHeartbeatFrequency());
+        }
+        if (connection.getSslEnabled() != null) {
+            build.sslEnabled(connection.getSslEnabled());
+        }
+        if (connection.getApplicationName() != null) {
+            build.applicationName(connection.getApplicationName());
+        }
+        return build;
+    }
+
+    /**
+     * MongoClientURI总是用uri中的compressors覆盖builder的配置，因此压缩算法以uri参数的形式追加
+     *
+     * @param connection
+     * @return
+     */
+    static String withCompressors(MongoConnection connection) {
+        String uri = connection.getUri();
+        if (connection.getCompressors() == null || uri.contains("compressors=")) {
+            return uri;
+        }
+        StringBuilder builder = new StringBuilder(uri);
+        if (uri.indexOf('?') >= 0) {
+            builder.append('&');
+        } else {
+            builder.append(uri.indexOf('/', uri.indexOf("://") + 3) >= 0 ? "?" : "/?");
+        }
+        builder.append("compressors=").append(connection.getCompressors().replace(" ", ""));
+        if (connection.getZlibCompressionLevel() != null && !uri.contains("zlibCompressionLevel=")) {
+            builder.append("&zlibCompressionLevel=").append(connection.getZlibCompressionLevel());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 关闭全部客户端，之后可重新init
+     */
+    public void close() {
+        synchronized (instance) {
+            for (MongoDB mongoDB : dbs.values()) {
+                mongoDB.closeWriteBehinds();
+            }
+            for (MongoClient client : clients.values()) {
+                client.close();
+            }
+            clients.clear();
+            AsyncMongoDB.closeClients();
+            if (indexManager != null) {
+                indexManager.shutdown();
+                indexManager = null;
+            }
+            dbs.clear();
+            defaultDb = null;
+            hasInit = false;
+        }
     }
 
     private Document loadXml(String confPath) {
@@ -157,6 +552,60 @@ public class MongoFactory {
         return document;
     }
 
+    private void parseMetrics(Document document) {
+        Node metricsNode = document.selectSingleNode("mongo/metrics");
+        if (metricsNode == null) {
+            return;
+        }
+        Node enabledNode = metricsNode.selectSingleNode("enabled");
+        if (enabledNode != null) {
+            MongoMetrics.setEnabled(Boolean.valueOf(enabledNode.getText().trim()));
+        }
+        Node jmxNode = metricsNode.selectSingleNode("jmx");
+        if (jmxNode != null) {
+            MongoMetrics.setJmx(Boolean.valueOf(jmxNode.getText().trim()));
+        }
+        Node replySizeNode = metricsNode.selectSingleNode("replySize");
+        if (replySizeNode != null) {
+            MongoMetrics.setReplySize(Boolean.valueOf(replySizeNode.getText().trim()));
+        }
+    }
+
+    private void parseIndexes(Document document) {
+        Node indexesNode = document.selectSingleNode("mongo/indexes");
+        if (indexesNode == null) {
+            return;
+        }
+        String mode = getText(indexesNode, "mode");
+        if (mode != null) {
+            indexMode = IndexMode.valueOf(mode.toUpperCase());
+        }
+        Integer threads = getInteger(indexesNode, "threads");
+        if (threads != null) {
+            indexThreads = threads;
+        }
+    }
+
+    private Map<String, CacheConfig> parseCacheConfigs(Document document) {
+        Map<String, CacheConfig> configs = new HashMap<>();
+        List<Node> cacheNodes = document.selectNodes("mongo/caches/cache");
+        if (cacheNodes != null) {
+            for (Node cacheNode : cacheNodes) {
+                CacheConfig config = new CacheConfig();
+                Node maxSizeNode = cacheNode.selectSingleNode("maxSize");
+                if (maxSizeNode != null) {
+                    config.setMaxSize(Integer.parseInt(maxSizeNode.getText().trim()));
+                }
+                Node ttlNode = cacheNode.selectSingleNode("ttl");
+                if (ttlNode != null) {
+                    config.setTtl(Long.parseLong(ttlNode.getText().trim()));
+                }
+                configs.put(cacheNode.selectSingleNode("class").getText().trim(), config);
+            }
+        }
+        return configs;
+    }
+
     private List<MongoConnection> parseMongoConnection(Document document) {
         List<MongoConnection> connections = new ArrayList<>();
         List<Node> connectionNodes = document.selectNodes("mongo/connections/connection");
@@ -170,10 +619,49 @@ public class MongoFactory {
                 if (isDefaultNode != null) {
                     isDefault = Boolean.valueOf(isDefaultNode.getText());
                 }
-                connections.add(new MongoConnection(uri, dbName, name, isDefault));
+                MongoConnection connection = new MongoConnection(uri, dbName, name, isDefault);
+                connection.setMaxPoolSize(getInteger(connectionNode, "maxPoolSize"));
+                connection.setMinPoolSize(getInteger(connectionNode, "minPoolSize"));
+                connection.setWaitQueueMultiple(getInteger(connectionNode, "waitQueueMultiple"));
+                connection.setMaxWaitTime(getInteger(connectionNode, "maxWaitTime"));
+                connection.setMaxConnectionIdleTime(getInteger(connectionNode, "maxConnectionIdleTime"));
+                connection.setMaxConnectionLifeTime(getInteger(connectionNode, "maxConnectionLifeTime"));
+                connection.setConnectTimeout(getInteger(connectionNode, "connectTimeout"));
+                connection.setSocketTimeout(getInteger(connectionNode, "socketTimeout"));
+                connection.setServerSelectionTimeout(getInteger(connectionNode, "serverSelectionTimeout"));
+                connection.setHeartbeatFrequency(getInteger(connectionNode, "heartbeatFrequency"));
+                connection.setSocketKeepAlive(getBoolean(connectionNode, "socketKeepAlive"));
+                connection.setSslEnabled(getBoolean(connectionNode, "sslEnabled"));
+                connection.setCompressors(getText(connectionNode, "compressors"));
+                connection.setZlibCompressionLevel(getInteger(connectionNode, "zlibCompressionLevel"));
+                connection.setApplicationName(getText(connectionNode, "applicationName"));
+                connection.setReadPreference(getText(connectionNode, "readPreference"));
+                String maxStaleness = getText(connectionNode, "maxStaleness");
+                connection.setMaxStaleness(maxStaleness == null ? null : Long.valueOf(maxStaleness));
+                connection.setReadConcern(getText(connectionNode, "readConcern"));
+                connections.add(connection);
             }
         }
         return connections;
     }
 
+    private static String getText(Node parent, String name) {
+        Node node = parent.selectSingleNode(name);
+        if (node == null) {
+            return null;
+        }
+        String text = node.getText().trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    private static Integer getInteger(Node parent, String name) {
+        String text = getText(parent, name);
+        return text == null ? null : Integer.valueOf(text);
+    }
+
+    private static Boolean getBoolean(Node parent, String name) {
+        String text = getText(parent, name);
+        return text == null ? null : Boolean.valueOf(text);
+    }
+
 }
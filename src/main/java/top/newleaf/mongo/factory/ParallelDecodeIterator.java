@@ -0,0 +1,154 @@
+package top.newleaf.mongo.factory;
+
+import com.mongodb.client.MongoCursor;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Decoder;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 游标只读取原始bson，按块提交到线程池并行解码，调用线程在等待解码时继续拉取后续批次
+ * <p>
+ * 同时解码的块数有上限，内存中最多保留window * CHUNK_SIZE个文档
+ *
+ * @author chengshx
+ */
+class ParallelDecodeIterator<T> implements Iterator<T> {
+
+    /**
+     * 每个解码任务的文档数
+     */
+    private static final int CHUNK_SIZE = 128;
+
+    private final MongoCursor<RawBsonDocument> cursor;
+    private final Decoder<T> decoder;
+    private final Executor executor;
+    private final boolean ordered;
+    private final int window;
+    /**
+     * 按提交顺序排列的全部未取走的解码任务，关闭时逐个取消
+     */
+    private final Deque<CompletableFuture<List<T>>> pending = new ArrayDeque<>();
+    /**
+     * 按完成顺序排列的解码任务，unordered时使用
+     */
+    private final BlockingQueue<CompletableFuture<List<T>>> completed = new LinkedBlockingQueue<>();
+    private Iterator<T> current = Collections.emptyIterator();
+    private boolean exhausted;
+    private boolean closed;
+
+    ParallelDecodeIterator(MongoCursor<RawBsonDocument> cursor, Decoder<T> decoder, Executor executor, boolean ordered, int window) {
+        this.cursor = cursor;
+        this.decoder = decoder;
+        this.executor = executor;
+        this.ordered = ordered;
+        this.window = window;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (closed) {
+                return false;
+            }
+            fill();
+            if (pending.isEmpty()) {
+                close();
+                return false;
+            }
+            current = take().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /**
+     * 关闭游标并取消全部未开始的解码任务，ordered和unordered相同
+     */
+    void close() {
+        if (!closed) {
+            closed = true;
+            exhausted = true;
+            cursor.close();
+            for (CompletableFuture<List<T>> future : pending) {
+                future.cancel(false);
+            }
+            pending.clear();
+            completed.clear();
+            current = Collections.emptyIterator();
+        }
+    }
+
+    /**
+     * 拉取文档直到解码中的块数达到上限
+     */
+    private void fill() {
+        try {
+            while (!exhausted && pending.size() < window) {
+                List<RawBsonDocument> chunk = new ArrayList<>(CHUNK_SIZE);
+                while (chunk.size() < CHUNK_SIZE && cursor.hasNext()) {
+                    chunk.add(cursor.next());
+                }
+                if (chunk.size() < CHUNK_SIZE) {
+                    exhausted = true;
+                }
+                if (!chunk.isEmpty()) {
+                    submit(chunk);
+                }
+            }
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void submit(List<RawBsonDocument> chunk) {
+        CompletableFuture<List<T>> future = CompletableFuture.supplyAsync(() -> decode(chunk), executor);
+        pending.add(future);
+        if (!ordered) {
+            future.whenComplete((result, e) -> completed.add(future));
+        }
+    }
+
+    private List<T> take() {
+        CompletableFuture<List<T>> future;
+        if (ordered) {
+            future = pending.poll();
+        } else {
+            try {
+                future = completed.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new CancellationException("等待解码结果时被中断");
+            }
+            pending.remove(future);
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            close();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    private List<T> decode(List<RawBsonDocument> chunk) {
+        List<T> entities = new ArrayList<>(chunk.size());
+        for (RawBsonDocument document : chunk) {
+            entities.add(document.decode(decoder));
+        }
+        return entities;
+    }
+}
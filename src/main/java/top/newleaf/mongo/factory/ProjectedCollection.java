@@ -0,0 +1,89 @@
+package top.newleaf.mongo.factory;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Projections;
+import org.bson.conversions.Bson;
+import org.bson.codecs.configuration.CodecRegistries;
+import top.newleaf.mongo.codec.BeanCodec;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 只查询部分字段的集合视图，查询时带上对应的projection，解码时跳过其余列
+ *
+ * @author chengshx
+ */
+public class ProjectedCollection<T> {
+
+    private static final String ID_FIELD = "_id";
+
+    private final MongoCollection<T> collection;
+    private final Bson projection;
+
+    ProjectedCollection(MongoCollection<T> collection, Class<T> clazz, Collection<String> fields) {
+        BeanCodec<T> codec = new BeanCodec<>(clazz, collection.getCodecRegistry()).withProjection(fields);
+        List<String> columns = codec.getColumnNames(fields);
+        if (columns.contains(ID_FIELD)) {
+            this.projection = Projections.include(columns);
+        } else {
+            this.projection = Projections.fields(Projections.include(columns), Projections.excludeId());
+        }
+        this.collection = collection.withCodecRegistry(CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(codec), collection.getCodecRegistry()));
+    }
+
+    /**
+     * 查询全部文档的指定字段
+     *
+     * @return
+     */
+    public FindIterable<T> find() {
+        return collection.find().projection(projection);
+    }
+
+    /**
+     * 查询符合条件文档的指定字段
+     *
+     * @param filter
+     * @return
+     */
+    public FindIterable<T> find(Bson filter) {
+        return collection.find(filter).projection(projection);
+    }
+
+    /**
+     * 查询符合条件的第一个文档的指定字段
+     *
+     * @param filter
+     * @return
+     */
+    public T first(Bson filter) {
+        return find(filter).first();
+    }
+
+    /**
+     * 流式查询符合条件文档的指定字段
+     *
+     * @param filter
+     * @param batchSize 每批拉取的文档数
+     * @return
+     */
+    public Stream<T> stream(Bson filter, int batchSize) {
+        return CursorStream.of(find(filter).batchSize(batchSize));
+    }
+
+    public Bson getProjection() {
+        return projection;
+    }
+
+    /**
+     * 使用部分解码codec的集合，自定义查询时需自行设置projection
+     *
+     * @return
+     */
+    public MongoCollection<T> getCollection() {
+        return collection;
+    }
+}
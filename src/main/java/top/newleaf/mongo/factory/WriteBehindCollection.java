@@ -0,0 +1,321 @@
+package top.newleaf.mongo.factory;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.newleaf.mongo.bulk.WriteBehindConfig;
+import top.newleaf.mongo.bulk.WriteErrorHandler;
+import top.newleaf.mongo.codec.BeanCodec;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 异步批量写入的集合视图，写操作先进入有界队列，达到批次大小或定时由后台线程以bulkWrite写入
+ * <p>
+ * 加入队列时即把实体编码为文档快照，之后修改实体不影响写入的内容；
+ * 写入结果只能通过WriteErrorHandler获知；每批写入后使缓存中对应id的文档失效，无法确定id的写操作清空实体的缓存
+ *
+ * @author chengshx
+ */
+public class WriteBehindCollection<T> implements Closeable {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(WriteBehindCollection.class);
+    private static final String ID_FIELD = "_id";
+
+    private final MongoDB db;
+    private final Class<T> clazz;
+    private final MongoCollection<T> collection;
+    private final MongoCollection<RawBsonDocument> rawCollection;
+    private final BeanCodec<T> codec;
+    private final WriteBehindConfig config;
+    private final WriteErrorHandler<T> errorHandler;
+    private final BlockingQueue<PendingWrite<T>> queue;
+    private final BulkWriteOptions options;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    /**
+     * 写入队列时持有读锁，关闭时获取写锁等待正在进行的写入完成
+     */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private final Object flushLock = new Object();
+    private final Thread shutdownHook;
+    private volatile boolean closed;
+
+    WriteBehindCollection(MongoDB db, MongoCollection<T> collection, Class<T> clazz, WriteBehindConfig config, WriteErrorHandler<T> errorHandler) {
+        this.db = db;
+        this.clazz = clazz;
+        this.codec = MongoDB.getBeanCodec(collection.getCodecRegistry(), clazz);
+        this.collection = collection;
+        this.rawCollection = collection.withDocumentClass(RawBsonDocument.class);
+        this.config = config;
+        this.errorHandler = errorHandler;
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.options = new BulkWriteOptions().ordered(config.isOrdered());
+        String threadName = "mongo-write-behind-" + collection.getNamespace().getFullName();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushQuietly, config.getFlushInterval(), config.getFlushInterval(), TimeUnit.MILLISECONDS);
+        if (config.isFlushOnShutdown()) {
+            shutdownHook = new Thread(this::close, threadName + "-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } else {
+            shutdownHook = null;
+        }
+    }
+
+    /**
+     * 插入实体，_id为空时立即在客户端生成
+     *
+     * @param entity
+     */
+    public void insert(T entity) {
+        codec.generateIdIfAbsentFromDocument(entity);
+        write(new InsertOneModel<>(entity));
+    }
+
+    /**
+     * 按实体id替换文档
+     *
+     * @param entity
+     */
+    public void replace(T entity) {
+        write(new ReplaceOneModel<>(Filters.eq(ID_FIELD, codec.getDocumentId(entity)), entity));
+    }
+
+    /**
+     * 按实体id替换文档，不存在时插入
+     *
+     * @param entity
+     */
+    public void upsert(T entity) {
+        codec.generateIdIfAbsentFromDocument(entity);
+        write(new ReplaceOneModel<>(Filters.eq(ID_FIELD, codec.getDocumentId(entity)), entity, new UpdateOptions().upsert(true)));
+    }
+
+    /**
+     * 按id删除文档
+     *
+     * @param id id字段类型的值
+     */
+    public void deleteById(Object id) {
+        BsonValue key = codec.toIdValue(id);
+        DeleteOneModel<T> model = new DeleteOneModel<>(Filters.eq(ID_FIELD, key));
+        enqueue(new PendingWrite<>(model, snapshot(model), key, false));
+    }
+
+    /**
+     * 加入任意写操作，队列满时按offerTimeout等待
+     *
+     * @param model
+     */
+    public void write(WriteModel<T> model) {
+        WriteModel<RawBsonDocument> snapshot = snapshot(model);
+        if (snapshot instanceof InsertOneModel) {
+            // 没有_id时由服务端生成，不会与缓存冲突
+            enqueue(new PendingWrite<>(model, snapshot, ((InsertOneModel<RawBsonDocument>) snapshot).getDocument().get(ID_FIELD), false));
+        } else if (snapshot instanceof ReplaceOneModel) {
+            BsonValue key = ((ReplaceOneModel<RawBsonDocument>) snapshot).getReplacement().get(ID_FIELD);
+            enqueue(new PendingWrite<>(model, snapshot, key, key == null));
+        } else {
+            enqueue(new PendingWrite<>(model, snapshot, null, true));
+        }
+    }
+
+    private void enqueue(PendingWrite<T> pending) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("已关闭 : " + collection.getNamespace());
+            }
+            long timeout = config.getOfferTimeout();
+            if (timeout <= 0) {
+                queue.put(pending);
+            } else if (!queue.offer(pending, timeout, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("写入队列已满 : " + collection.getNamespace());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("等待写入队列时被中断", e);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        // 达到批次大小时立即刷新，已有刷新请求时不重复提交
+        if (queue.size() >= config.getBatchSize() && flushRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    flushRequested.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * 在当前线程写入队列中的全部操作
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<PendingWrite<T>> batch = new ArrayList<>(config.getBatchSize());
+            while (queue.drainTo(batch, config.getBatchSize()) > 0) {
+                bulkWrite(batch);
+                batch = new ArrayList<>(config.getBatchSize());
+            }
+        }
+    }
+
+    /**
+     * 队列中等待写入的操作数
+     *
+     * @return
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    public MongoCollection<T> getCollection() {
+        return collection;
+    }
+
+    /**
+     * 停止接收写操作，写入队列中剩余的操作
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // 等待正在写入队列的线程结束，期间刷新线程继续消费，队列满的写入方不会一直阻塞
+        closeLock.writeLock().lock();
+        closeLock.writeLock().unlock();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // 进程正在退出
+            }
+        }
+    }
+
+    /**
+     * 插入和替换的实体编码为文档快照，其余写操作不包含实体，直接使用
+     *
+     * @param model
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private WriteModel<RawBsonDocument> snapshot(WriteModel<T> model) {
+        if (model instanceof InsertOneModel) {
+            return new InsertOneModel<>(codec.toRawDocument(((InsertOneModel<T>) model).getDocument()));
+        }
+        if (model instanceof ReplaceOneModel) {
+            ReplaceOneModel<T> replace = (ReplaceOneModel<T>) model;
+            return new ReplaceOneModel<>(replace.getFilter(), codec.toRawDocument(replace.getReplacement()), replace.getOptions());
+        }
+        return (WriteModel<RawBsonDocument>) (WriteModel<?>) model;
+    }
+
+    private void bulkWrite(List<PendingWrite<T>> pendings) {
+        List<WriteModel<RawBsonDocument>> snapshots = new ArrayList<>(pendings.size());
+        for (PendingWrite<T> pending : pendings) {
+            snapshots.add(pending.snapshot);
+        }
+        Exception error = null;
+        try {
+            rawCollection.bulkWrite(snapshots, options);
+        } catch (Exception e) {
+            error = e;
+        }
+        // 失败时部分文档可能已写入，同样使缓存失效
+        invalidateCache(pendings);
+        if (error != null) {
+            onError(pendings, error);
+        }
+    }
+
+    private void invalidateCache(List<PendingWrite<T>> pendings) {
+        CachedCollection<?> cached = db.getCachedIfPresent(clazz);
+        if (cached == null) {
+            return;
+        }
+        for (PendingWrite<T> pending : pendings) {
+            if (pending.clearCache) {
+                cached.getCache().clear();
+                return;
+            }
+            if (pending.key != null) {
+                cached.getCache().invalidate(pending.key);
+            }
+        }
+    }
+
+    private void onError(List<PendingWrite<T>> pendings, Exception e) {
+        List<WriteModel<T>> batch = new ArrayList<>(pendings.size());
+        for (PendingWrite<T> pending : pendings) {
+            batch.add(pending.model);
+        }
+        if (errorHandler == null) {
+            LOGGER.error("批量写入失败，namespace = {}, size = {}", collection.getNamespace(), batch.size(), e);
+            return;
+        }
+        try {
+            errorHandler.onError(batch, e);
+        } catch (Exception handlerException) {
+            LOGGER.error("批量写入失败回调异常", handlerException);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Throwable e) {
+            // 定时任务抛出异常后不会再执行
+            LOGGER.error("批量写入失败", e);
+        }
+    }
+
+    /**
+     * 队列中的写操作，model用于失败回调，snapshot为实际写入的内容
+     */
+    private static final class PendingWrite<T> {
+
+        private final WriteModel<T> model;
+        private final WriteModel<RawBsonDocument> snapshot;
+        /**
+         * 写入的文档id，为null时不需要使缓存失效
+         */
+        private final BsonValue key;
+        /**
+         * 无法确定影响的文档，写入后清空缓存
+         */
+        private final boolean clearCache;
+
+        private PendingWrite(WriteModel<T> model, WriteModel<RawBsonDocument> snapshot, BsonValue key, boolean clearCache) {
+            this.model = model;
+            this.snapshot = snapshot;
+            this.key = key;
+            this.clearCache = clearCache;
+        }
+    }
+}
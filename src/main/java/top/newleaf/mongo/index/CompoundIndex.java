@@ -0,0 +1,34 @@
+package top.newleaf.mongo.index;
+
+import java.lang.annotation.*;
+
+/**
+ * 复合索引，可重复标注
+ *
+ * @author chengshx
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(CompoundIndexes.class)
+public @interface CompoundIndex {
+
+    /**
+     * 字段名或列名，"-"前缀表示降序，嵌套实体的字段用"."连接，如{"userId", "-createTime"}
+     */
+    String[] fields();
+
+    boolean unique() default false;
+
+    boolean sparse() default false;
+
+    /**
+     * 大于等于0时为TTL索引，单位秒
+     */
+    long expireAfterSeconds() default -1;
+
+    /**
+     * 索引名，为空时由服务端按列名生成
+     */
+    String name() default "";
+}
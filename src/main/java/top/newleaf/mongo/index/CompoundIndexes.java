@@ -0,0 +1,16 @@
+package top.newleaf.mongo.index;
+
+import java.lang.annotation.*;
+
+/**
+ * 多个@CompoundIndex的容器
+ *
+ * @author chengshx
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CompoundIndexes {
+
+    CompoundIndex[] value();
+}
@@ -0,0 +1,210 @@
+package top.newleaf.mongo.index;
+
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonValue;
+import top.newleaf.mongo.codec.BeanModel;
+import top.newleaf.mongo.codec.PropertyModel;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 由注解解析出的索引，字段名已按BeanModel转换为列名
+ *
+ * @author chengshx
+ */
+public class IndexDefinition {
+
+    private static final ConcurrentHashMap<Class<?>, List<IndexDefinition>> DEFINITIONS = new ConcurrentHashMap<>();
+    private static final String DESCENDING_PREFIX = "-";
+
+    private final BsonDocument keys;
+    private final IndexOptions options;
+    private final String keyPattern;
+
+    public IndexDefinition(BsonDocument keys, IndexOptions options) {
+        this.keys = keys;
+        this.options = options;
+        this.keyPattern = getKeyPattern(keys);
+    }
+
+    /**
+     * 解析实体上的@Indexed和@CompoundIndex，结果按class缓存
+     *
+     * @param clazz
+     * @return 没有索引注解时返回空列表
+     */
+    public static List<IndexDefinition> of(Class<?> clazz) {
+        List<IndexDefinition> definitions = DEFINITIONS.get(clazz);
+        if (definitions == null) {
+            definitions = DEFINITIONS.computeIfAbsent(clazz, IndexDefinition::parse);
+        }
+        return definitions;
+    }
+
+    private static List<IndexDefinition> parse(Class<?> clazz) {
+        List<IndexDefinition> definitions = new ArrayList<>();
+        BeanModel<?> model = BeanModel.of(clazz);
+        for (PropertyModel property : model.getProperties()) {
+            Indexed indexed = property.getField().getAnnotation(Indexed.class);
+            if (indexed != null) {
+                int order = indexed.order() < 0 ? -1 : 1;
+                BsonDocument keys = new BsonDocument(property.getColumnName(), new BsonInt32(order));
+                definitions.add(new IndexDefinition(keys, buildOptions(indexed.name(), indexed.unique(), indexed.sparse(), indexed.expireAfterSeconds())));
+            }
+        }
+        for (CompoundIndex compoundIndex : clazz.getAnnotationsByType(CompoundIndex.class)) {
+            BsonDocument keys = new BsonDocument();
+            for (String field : compoundIndex.fields()) {
+                int order = 1;
+                if (field.startsWith(DESCENDING_PREFIX)) {
+                    order = -1;
+                    field = field.substring(DESCENDING_PREFIX.length());
+                }
+                keys.append(getColumnPath(model, field), new BsonInt32(order));
+            }
+            if (keys.isEmpty()) {
+                throw new IllegalArgumentException("复合索引未指定字段 : " + clazz.getName());
+            }
+            definitions.add(new IndexDefinition(keys, buildOptions(compoundIndex.name(), compoundIndex.unique(),
+                    compoundIndex.sparse(), compoundIndex.expireAfterSeconds())));
+        }
+        return Collections.unmodifiableList(definitions);
+    }
+
+    /**
+     * 逐级将字段名转换为列名，嵌套实体按其映射模型转换，无法解析的部分原样保留
+     *
+     * @param model
+     * @param path
+     * @return
+     */
+    private static String getColumnPath(BeanModel<?> model, String path) {
+        StringBuilder columnPath = new StringBuilder();
+        for (String name : path.split("\\.")) {
+            if (columnPath.length() > 0) {
+                columnPath.append('.');
+            }
+            PropertyModel property = null;
+            if (model != null) {
+                property = model.getPropertyByName(name);
+                if (property == null) {
+                    property = model.getProperty(name);
+                }
+            }
+            if (property == null) {
+                if (columnPath.length() == 0) {
+                    throw new IllegalArgumentException(path + "不存在字段 : " + name);
+                }
+                columnPath.append(name);
+                model = null;
+            } else {
+                columnPath.append(property.getColumnName());
+                model = property.getGenericModel();
+            }
+        }
+        return columnPath.toString();
+    }
+
+    private static IndexOptions buildOptions(String name, boolean unique, boolean sparse, long expireAfterSeconds) {
+        // 后台创建，不阻塞同一数据库的其他操作
+        IndexOptions options = new IndexOptions().background(true).unique(unique).sparse(sparse);
+        if (!name.isEmpty()) {
+            options.name(name);
+        }
+        if (expireAfterSeconds >= 0) {
+            options.expireAfter(expireAfterSeconds, TimeUnit.SECONDS);
+        }
+        return options;
+    }
+
+    /**
+     * 索引键的规范形式，如"user_id:1,create_time:-1"，用于与服务端已有索引比较
+     *
+     * @param keys
+     * @return
+     */
+    static String getKeyPattern(BsonDocument keys) {
+        StringBuilder pattern = new StringBuilder();
+        for (Map.Entry<String, BsonValue> entry : keys.entrySet()) {
+            if (pattern.length() > 0) {
+                pattern.append(',');
+            }
+            pattern.append(entry.getKey()).append(':');
+            BsonValue value = entry.getValue();
+            // 旧版本服务端可能以double保存方向
+            if (value.isNumber()) {
+                pattern.append(value.asNumber().doubleValue() < 0 ? -1 : 1);
+            } else if (value.isString()) {
+                pattern.append(value.asString().getValue());
+            } else {
+                pattern.append(value);
+            }
+        }
+        return pattern.toString();
+    }
+
+    /**
+     * 比较服务端同键索引的unique、sparse和expireAfterSeconds，选项不同时无法以注解的选项重新创建
+     *
+     * @param index listIndexes返回的索引
+     * @return 不一致的选项，一致时返回空列表
+     */
+    List<String> compareOptions(BsonDocument index) {
+        List<String> differences = new ArrayList<>();
+        boolean unique = getBoolean(index.get("unique"));
+        if (unique != options.isUnique()) {
+            differences.add("unique应为" + options.isUnique() + "，服务端为" + unique);
+        }
+        boolean sparse = getBoolean(index.get("sparse"));
+        if (sparse != options.isSparse()) {
+            differences.add("sparse应为" + options.isSparse() + "，服务端为" + sparse);
+        }
+        BsonValue expireValue = index.get("expireAfterSeconds");
+        Long expireAfterSeconds = expireValue != null && expireValue.isNumber() ? expireValue.asNumber().longValue() : null;
+        if (!Objects.equals(expireAfterSeconds, options.getExpireAfter(TimeUnit.SECONDS))) {
+            differences.add("expireAfterSeconds应为" + options.getExpireAfter(TimeUnit.SECONDS) + "，服务端为" + expireAfterSeconds);
+        }
+        return differences;
+    }
+
+    /**
+     * 旧版本服务端可能以数字保存布尔选项
+     */
+    private static boolean getBoolean(BsonValue value) {
+        if (value == null) {
+            return false;
+        }
+        if (value.isBoolean()) {
+            return value.asBoolean().getValue();
+        }
+        return value.isNumber() && value.asNumber().doubleValue() != 0;
+    }
+
+    public IndexModel toIndexModel() {
+        return new IndexModel(keys, options);
+    }
+
+    public BsonDocument getKeys() {
+        return keys;
+    }
+
+    public IndexOptions getOptions() {
+        return options;
+    }
+
+    public String getKeyPattern() {
+        return keyPattern;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexDefinition{" + keyPattern + (options.getName() == null ? "" : ", name=" + options.getName())
+                + (options.isUnique() ? ", unique" : "") + (options.isSparse() ? ", sparse" : "")
+                + (options.getExpireAfter(TimeUnit.SECONDS) == null ? "" : ", expireAfterSeconds=" + options.getExpireAfter(TimeUnit.SECONDS)) + '}';
+    }
+}
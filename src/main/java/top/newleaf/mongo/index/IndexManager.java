@@ -0,0 +1,158 @@
+package top.newleaf.mongo.index;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexModel;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按注解创建或检查集合的索引，多个集合在线程池中并行处理
+ *
+ * @author chengshx
+ */
+public class IndexManager {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(IndexManager.class);
+    private static final String ID_INDEX = "_id_";
+    private static final BsonDocument INDEX_STATS = new BsonDocument("$indexStats", new BsonDocument());
+
+    private final IndexMode mode;
+    private final ExecutorService executor;
+
+    public IndexManager(IndexMode mode, int threads) {
+        this.mode = mode;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "mongo-index-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public IndexMode getMode() {
+        return mode;
+    }
+
+    /**
+     * 按模式在线程池中处理实体对应集合的索引，失败只记录日志
+     *
+     * @param collection
+     * @param clazz
+     * @return
+     */
+    public CompletableFuture<Void> submit(MongoCollection<?> collection, Class<?> clazz) {
+        if (mode == IndexMode.NONE) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                List<IndexDefinition> definitions = IndexDefinition.of(clazz);
+                if (definitions.isEmpty()) {
+                    return;
+                }
+                if (mode == IndexMode.CREATE) {
+                    List<String> created = ensureIndexes(collection, definitions);
+                    if (!created.isEmpty()) {
+                        LOGGER.info("创建索引，namespace = {}, indexes = {}", collection.getNamespace(), created);
+                    }
+                } else {
+                    IndexReport report = verify(collection, definitions);
+                    if (!report.isOk()) {
+                        LOGGER.warn("索引检查未通过 : {}", report);
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.error("处理索引失败，namespace = {}", collection.getNamespace(), e);
+            }
+        }, executor);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 创建服务端不存在的索引，已存在的按索引键判断；选项与注解不同的索引不会被修改，只记录日志
+     *
+     * @param collection
+     * @param definitions
+     * @return 创建的索引名
+     */
+    public static List<String> ensureIndexes(MongoCollection<?> collection, List<IndexDefinition> definitions) {
+        Map<String, BsonDocument> existing = getExistingIndexes(collection);
+        List<IndexModel> models = new ArrayList<>();
+        for (IndexDefinition definition : definitions) {
+            BsonDocument index = existing.get(definition.getKeyPattern());
+            if (index == null) {
+                models.add(definition.toIndexModel());
+            } else {
+                List<String> differences = definition.compareOptions(index);
+                if (!differences.isEmpty()) {
+                    LOGGER.warn("索引选项与注解不同，需手动重建，namespace = {}, index = {}, {}", collection.getNamespace(),
+                            getName(index), differences);
+                }
+            }
+        }
+        return models.isEmpty() ? Collections.emptyList() : collection.createIndexes(models);
+    }
+
+    /**
+     * 检查缺少的索引和选项不同的索引，并通过$indexStats找出未使用的索引
+     *
+     * @param collection
+     * @param definitions
+     * @return
+     */
+    public static IndexReport verify(MongoCollection<?> collection, List<IndexDefinition> definitions) {
+        Map<String, BsonDocument> existing = getExistingIndexes(collection);
+        List<IndexDefinition> missing = new ArrayList<>();
+        List<String> mismatched = new ArrayList<>();
+        for (IndexDefinition definition : definitions) {
+            BsonDocument index = existing.get(definition.getKeyPattern());
+            if (index == null) {
+                missing.add(definition);
+            } else {
+                List<String> differences = definition.compareOptions(index);
+                if (!differences.isEmpty()) {
+                    mismatched.add(getName(index) + " " + differences);
+                }
+            }
+        }
+        List<String> unused = new ArrayList<>();
+        try {
+            for (BsonDocument stats : collection.withDocumentClass(BsonDocument.class).aggregate(Collections.singletonList(INDEX_STATS))) {
+                String name = stats.getString("name").getValue();
+                BsonValue ops = stats.getDocument("accesses", new BsonDocument()).get("ops");
+                if (!ID_INDEX.equals(name) && ops != null && ops.isNumber() && ops.asNumber().longValue() == 0) {
+                    unused.add(name);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn("获取索引使用情况失败，namespace = {}", collection.getNamespace(), e);
+        }
+        return new IndexReport(collection.getNamespace().getFullName(), missing, mismatched, unused);
+    }
+
+    /**
+     * 服务端已有索引，key为索引键的规范形式，value为listIndexes返回的索引
+     */
+    private static Map<String, BsonDocument> getExistingIndexes(MongoCollection<?> collection) {
+        Map<String, BsonDocument> indexes = new HashMap<>();
+        for (BsonDocument index : collection.listIndexes(BsonDocument.class)) {
+            indexes.put(IndexDefinition.getKeyPattern(index.getDocument("key")), index);
+        }
+        return indexes;
+    }
+
+    private static String getName(BsonDocument index) {
+        return index.getString("name").getValue();
+    }
+}
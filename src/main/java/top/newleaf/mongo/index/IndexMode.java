@@ -0,0 +1,22 @@
+package top.newleaf.mongo.index;
+
+/**
+ * 启动及首次访问集合时对注解索引的处理方式
+ *
+ * @author chengshx
+ */
+public enum IndexMode {
+
+    /**
+     * 不处理
+     */
+    NONE,
+    /**
+     * 后台创建缺少的索引
+     */
+    CREATE,
+    /**
+     * 只检查，记录缺少和未使用的索引
+     */
+    VERIFY
+}
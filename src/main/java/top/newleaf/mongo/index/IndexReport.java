@@ -0,0 +1,64 @@
+package top.newleaf.mongo.index;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 集合索引的检查结果
+ *
+ * @author chengshx
+ */
+public class IndexReport {
+
+    private final String namespace;
+    private final List<IndexDefinition> missing;
+    private final List<String> mismatched;
+    private final List<String> unused;
+
+    public IndexReport(String namespace, List<IndexDefinition> missing, List<String> mismatched, List<String> unused) {
+        this.namespace = namespace;
+        this.missing = Collections.unmodifiableList(missing);
+        this.mismatched = Collections.unmodifiableList(mismatched);
+        this.unused = Collections.unmodifiableList(unused);
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * 注解声明但服务端不存在的索引
+     *
+     * @return
+     */
+    public List<IndexDefinition> getMissing() {
+        return missing;
+    }
+
+    /**
+     * 服务端存在同键索引但unique、sparse或expireAfterSeconds与注解不同，每项为索引名及不一致的选项
+     *
+     * @return
+     */
+    public List<String> getMismatched() {
+        return mismatched;
+    }
+
+    /**
+     * 服务端存在但自统计开始(通常为mongod启动)后未被使用的索引名，不含_id_；无权限执行$indexStats时为空
+     *
+     * @return
+     */
+    public List<String> getUnused() {
+        return unused;
+    }
+
+    public boolean isOk() {
+        return missing.isEmpty() && mismatched.isEmpty() && unused.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "IndexReport{" + namespace + ", missing=" + missing + ", mismatched=" + mismatched + ", unused=" + unused + '}';
+    }
+}
@@ -0,0 +1,33 @@
+package top.newleaf.mongo.index;
+
+import java.lang.annotation.*;
+
+/**
+ * 单字段索引，列名与BeanCodec的映射规则一致
+ *
+ * @author chengshx
+ */
+@Documented
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Indexed {
+
+    /**
+     * 1升序，-1降序
+     */
+    int order() default 1;
+
+    boolean unique() default false;
+
+    boolean sparse() default false;
+
+    /**
+     * 大于等于0时为TTL索引，字段需为日期类型，单位秒
+     */
+    long expireAfterSeconds() default -1;
+
+    /**
+     * 索引名，为空时由服务端按列名生成
+     */
+    String name() default "";
+}
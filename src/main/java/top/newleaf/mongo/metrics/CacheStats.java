@@ -0,0 +1,56 @@
+package top.newleaf.mongo.metrics;
+
+import top.newleaf.mongo.cache.EntityCache;
+
+/**
+ * 直接读取EntityCache的计数，不额外统计
+ *
+ * @author chengshx
+ */
+public class CacheStats implements CacheStatsMXBean {
+
+    private final String name;
+    private final EntityCache<?, ?> cache;
+
+    CacheStats(String name, EntityCache<?, ?> cache) {
+        this.name = name;
+        this.cache = cache;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hits = cache.getHitCount();
+        long total = hits + cache.getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" + name + ", " + cache + '}';
+    }
+}
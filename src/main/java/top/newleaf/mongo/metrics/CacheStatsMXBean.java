@@ -0,0 +1,30 @@
+package top.newleaf.mongo.metrics;
+
+/**
+ * 单个实体按id缓存的统计
+ *
+ * @author chengshx
+ */
+public interface CacheStatsMXBean {
+
+    /**
+     * 库名:实体类名
+     */
+    String getName();
+
+    int getSize();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    /**
+     * 因容量或过期被淘汰的条目数
+     */
+    long getEvictionCount();
+
+    /**
+     * 命中次数占查询次数的比例，没有查询时为0
+     */
+    double getHitRatio();
+}
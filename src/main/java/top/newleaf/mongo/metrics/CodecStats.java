@@ -0,0 +1,104 @@
+package top.newleaf.mongo.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个实体类的编解码耗时、字节数和失败次数
+ *
+ * @author chengshx
+ */
+public class CodecStats implements CodecStatsMXBean {
+
+    private final String entity;
+    private final LatencyHistogram encodeTime = new LatencyHistogram();
+    private final LatencyHistogram decodeTime = new LatencyHistogram();
+    private final LongAdder encodeBytes = new LongAdder();
+    private final LongAdder decodeBytes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    CodecStats(String entity) {
+        this.entity = entity;
+    }
+
+    public void recordEncode(long nanos, long bytes) {
+        encodeTime.record(nanos);
+        if (bytes > 0) {
+            encodeBytes.add(bytes);
+        }
+    }
+
+    public void recordDecode(long nanos, long bytes) {
+        decodeTime.record(nanos);
+        if (bytes > 0) {
+            decodeBytes.add(bytes);
+        }
+    }
+
+    public void recordFailure() {
+        failures.increment();
+    }
+
+    public LatencyHistogram getEncodeTime() {
+        return encodeTime;
+    }
+
+    public LatencyHistogram getDecodeTime() {
+        return decodeTime;
+    }
+
+    @Override
+    public String getEntity() {
+        return entity;
+    }
+
+    @Override
+    public long getEncodeCount() {
+        return encodeTime.getCount();
+    }
+
+    @Override
+    public double getEncodeMeanMicros() {
+        return encodeTime.getMeanMicros();
+    }
+
+    @Override
+    public long getEncodeP99Micros() {
+        return encodeTime.getPercentileMicros(0.99);
+    }
+
+    @Override
+    public long getEncodeBytes() {
+        return encodeBytes.sum();
+    }
+
+    @Override
+    public long getDecodeCount() {
+        return decodeTime.getCount();
+    }
+
+    @Override
+    public double getDecodeMeanMicros() {
+        return decodeTime.getMeanMicros();
+    }
+
+    @Override
+    public long getDecodeP99Micros() {
+        return decodeTime.getPercentileMicros(0.99);
+    }
+
+    @Override
+    public long getDecodeBytes() {
+        return decodeBytes.sum();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CodecStats{" + entity + ", encode=" + getEncodeCount() + ", decode=" + getDecodeCount()
+                + ", failures=" + getFailureCount() + '}';
+    }
+}
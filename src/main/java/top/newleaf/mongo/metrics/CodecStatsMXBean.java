@@ -0,0 +1,38 @@
+package top.newleaf.mongo.metrics;
+
+/**
+ * 单个实体类的编解码统计
+ *
+ * @author chengshx
+ */
+public interface CodecStatsMXBean {
+
+    String getEntity();
+
+    long getEncodeCount();
+
+    double getEncodeMeanMicros();
+
+    long getEncodeP99Micros();
+
+    /**
+     * 编码的总字节数，只统计二进制writer
+     */
+    long getEncodeBytes();
+
+    long getDecodeCount();
+
+    double getDecodeMeanMicros();
+
+    long getDecodeP99Micros();
+
+    /**
+     * 解码的总字节数，只统计二进制reader
+     */
+    long getDecodeBytes();
+
+    /**
+     * 编解码失败及字段读写失败的次数
+     */
+    long getFailureCount();
+}
@@ -0,0 +1,94 @@
+package top.newleaf.mongo.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个集合单个命令的耗时、失败次数和响应大小
+ *
+ * @author chengshx
+ */
+public class CommandStats implements CommandStatsMXBean {
+
+    private final String namespace;
+    private final String command;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder replyBytes = new LongAdder();
+
+    CommandStats(String namespace, String command) {
+        this.namespace = namespace;
+        this.command = command;
+    }
+
+    void recordSuccess(long nanos, long bytes) {
+        latency.record(nanos);
+        if (bytes > 0) {
+            replyBytes.add(bytes);
+        }
+    }
+
+    void recordFailure(long nanos) {
+        latency.record(nanos);
+        failures.increment();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String getNamespace() {
+        return namespace;
+    }
+
+    @Override
+    public String getCommand() {
+        return command;
+    }
+
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.getMeanMicros();
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return latency.getMaxMicros();
+    }
+
+    @Override
+    public long getP50Micros() {
+        return latency.getPercentileMicros(0.5);
+    }
+
+    @Override
+    public long getP99Micros() {
+        return latency.getPercentileMicros(0.99);
+    }
+
+    @Override
+    public long getReplyBytes() {
+        return replyBytes.sum();
+    }
+
+    @Override
+    public long[] getLatencyBuckets() {
+        return latency.getBuckets();
+    }
+
+    @Override
+    public String toString() {
+        return "CommandStats{" + namespace + "." + command + ", count=" + getCount() + ", failures=" + getFailureCount()
+                + ", mean=" + getMeanMicros() + "us, p99=" + getP99Micros() + "us, replyBytes=" + getReplyBytes() + '}';
+    }
+}
@@ -0,0 +1,32 @@
+package top.newleaf.mongo.metrics;
+
+/**
+ * 单个集合单个命令的统计
+ *
+ * @author chengshx
+ */
+public interface CommandStatsMXBean {
+
+    String getNamespace();
+
+    String getCommand();
+
+    long getCount();
+
+    long getFailureCount();
+
+    double getMeanMicros();
+
+    long getMaxMicros();
+
+    long getP50Micros();
+
+    long getP99Micros();
+
+    /**
+     * 响应的总字节数，未开启统计时为0
+     */
+    long getReplyBytes();
+
+    long[] getLatencyBuckets();
+}
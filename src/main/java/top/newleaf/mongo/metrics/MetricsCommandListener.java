@@ -0,0 +1,88 @@
+package top.newleaf.mongo.metrics;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按集合和命令统计耗时、失败次数和响应大小
+ * <p>
+ * 命令开始时记录requestId对应的集合，结束事件中只有命令名
+ *
+ * @author chengshx
+ */
+public class MetricsCommandListener implements CommandListener {
+
+    private static final String GET_MORE = "getMore";
+    private static final String COLLECTION = "collection";
+    private static final BsonDocumentCodec DOCUMENT_CODEC = new BsonDocumentCodec();
+
+    private final Map<Integer, String> namespaces = new ConcurrentHashMap<>();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (MongoMetrics.isEnabled()) {
+            namespaces.put(event.getRequestId(), getNamespace(event));
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        String namespace = namespaces.remove(event.getRequestId());
+        CommandStats stats = namespace == null ? null : MongoMetrics.getCommandStats(namespace, event.getCommandName());
+        if (stats != null) {
+            long bytes = MongoMetrics.isReplySize() ? getSize(event.getResponse()) : 0;
+            stats.recordSuccess(event.getElapsedTime(TimeUnit.NANOSECONDS), bytes);
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        String namespace = namespaces.remove(event.getRequestId());
+        CommandStats stats = namespace == null ? null : MongoMetrics.getCommandStats(namespace, event.getCommandName());
+        if (stats != null) {
+            stats.recordFailure(event.getElapsedTime(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /**
+     * 集合类命令的第一个元素为集合名，getMore的集合名在collection中
+     *
+     * @param event
+     * @return
+     */
+    private static String getNamespace(CommandStartedEvent event) {
+        BsonDocument command = event.getCommand();
+        BsonValue collection = GET_MORE.equals(event.getCommandName()) ? command.get(COLLECTION) : command.get(event.getCommandName());
+        if (collection != null && collection.isString()) {
+            return event.getDatabaseName() + "." + collection.asString().getValue();
+        }
+        return event.getDatabaseName();
+    }
+
+    /**
+     * 驱动的响应文档clone时按字节复制，其余文档重新编码
+     *
+     * @param response
+     * @return
+     */
+    private static long getSize(BsonDocument response) {
+        if (response == null) {
+            return 0;
+        }
+        BsonDocument raw = response instanceof RawBsonDocument ? response : response.clone();
+        if (!(raw instanceof RawBsonDocument)) {
+            raw = new RawBsonDocument(response, DOCUMENT_CODEC);
+        }
+        return ((RawBsonDocument) raw).getByteBuffer().remaining();
+    }
+}
@@ -0,0 +1,199 @@
+package top.newleaf.mongo.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import top.newleaf.mongo.cache.EntityCache;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 命令、编解码与缓存统计的注册中心，默认关闭，由mongo.xml的metrics配置或setEnabled开启
+ * <p>
+ * 开启jmx时每个统计项注册为top.newleaf.mongo:type=Command|Codec|Cache,name=...的MXBean
+ *
+ * @author chengshx
+ */
+public final class MongoMetrics {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(MongoMetrics.class);
+    private static final String DOMAIN = "top.newleaf.mongo";
+
+    private static final Map<String, CommandStats> COMMANDS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, CodecStats> CODECS = new ConcurrentHashMap<>();
+    private static final Map<String, CacheStats> CACHES = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = false;
+    private static volatile boolean jmx = true;
+    private static volatile boolean replySize = false;
+
+    private MongoMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        MongoMetrics.enabled = enabled;
+    }
+
+    public static boolean isJmx() {
+        return jmx;
+    }
+
+    /**
+     * 是否注册到jmx，只影响之后创建的统计项
+     *
+     * @param jmx
+     */
+    public static void setJmx(boolean jmx) {
+        MongoMetrics.jmx = jmx;
+    }
+
+    public static boolean isReplySize() {
+        return replySize;
+    }
+
+    /**
+     * 是否统计响应大小，需要复制每个响应的字节，默认关闭
+     *
+     * @param replySize
+     */
+    public static void setReplySize(boolean replySize) {
+        MongoMetrics.replySize = replySize;
+    }
+
+    /**
+     * 获取实体类的编解码统计
+     *
+     * @param clazz
+     * @return 未开启时返回null
+     */
+    public static CodecStats getCodecStats(Class<?> clazz) {
+        if (!enabled) {
+            return null;
+        }
+        CodecStats stats = CODECS.get(clazz);
+        if (stats == null) {
+            stats = CODECS.computeIfAbsent(clazz, key -> register(new CodecStats(key.getName()), "Codec", key.getName()));
+        }
+        return stats;
+    }
+
+    /**
+     * 获取命令统计
+     *
+     * @param namespace 数据库名.集合名，无集合的命令只有数据库名
+     * @param command   命令名
+     * @return 未开启时返回null
+     */
+    public static CommandStats getCommandStats(String namespace, String command) {
+        if (!enabled) {
+            return null;
+        }
+        String key = namespace + ":" + command;
+        CommandStats stats = COMMANDS.get(key);
+        if (stats == null) {
+            stats = COMMANDS.computeIfAbsent(key, name -> register(new CommandStats(namespace, command), "Command", name));
+        }
+        return stats;
+    }
+
+    /**
+     * 注册实体缓存的命中统计，同名的缓存重新创建时替换原有的统计
+     *
+     * @param name  库名:实体类名
+     * @param cache
+     * @return 未开启时返回null
+     */
+    public static CacheStats registerCache(String name, EntityCache<?, ?> cache) {
+        if (!enabled) {
+            return null;
+        }
+        CacheStats stats = new CacheStats(name, cache);
+        if (CACHES.put(name, stats) != null) {
+            unregister("Cache", name);
+        }
+        return register(stats, "Cache", name);
+    }
+
+    /**
+     * 全部命令统计，key为"数据库名.集合名:命令名"
+     *
+     * @return
+     */
+    public static Map<String, CommandStats> getCommandStats() {
+        return Collections.unmodifiableMap(COMMANDS);
+    }
+
+    /**
+     * 全部编解码统计
+     *
+     * @return
+     */
+    public static Map<Class<?>, CodecStats> getCodecStats() {
+        return Collections.unmodifiableMap(CODECS);
+    }
+
+    /**
+     * 全部缓存统计，key为"库名:实体类名"
+     *
+     * @return
+     */
+    public static Map<String, CacheStats> getCacheStats() {
+        return Collections.unmodifiableMap(CACHES);
+    }
+
+    /**
+     * 清空全部统计并注销jmx
+     */
+    public static void reset() {
+        for (String key : COMMANDS.keySet()) {
+            unregister("Command", key);
+        }
+        for (Class<?> clazz : CODECS.keySet()) {
+            unregister("Codec", clazz.getName());
+        }
+        for (String name : CACHES.keySet()) {
+            unregister("Cache", name);
+        }
+        COMMANDS.clear();
+        CODECS.clear();
+        CACHES.clear();
+    }
+
+    private static <S> S register(S stats, String type, String name) {
+        if (jmx) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = objectName(type, name);
+                if (!server.isRegistered(objectName)) {
+                    server.registerMBean(stats, objectName);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("注册jmx失败，type = {}, name = {}", type, name, e);
+            }
+        }
+        return stats;
+    }
+
+    private static void unregister(String type, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(type, name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("注销jmx失败，type = {}, name = {}", type, name, e);
+        }
+    }
+
+    private static ObjectName objectName(String type, String name) throws Exception {
+        return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+    }
+}
@@ -0,0 +1,550 @@
+package top.newleaf.mongo.processor;
+
+import top.newleaf.mongo.codec.BeanCodec;
+import top.newleaf.mongo.codec.Compressed;
+import top.newleaf.mongo.scanner.CodecIndex;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 编译期为@Table实体生成codec，简单字段直接调用get/set方法并使用预先计算的列名，
+ * 其余字段交给BeanCodec处理，生成的codec标注@Generated，与手写codec同时存在时手写codec优先，
+ * 同时生成列出全部codec的注册类，可在mongo.xml的registries中配置或通过MongoFactory.registerCodecs注册，无需读取索引；
+ * 并把本次编译的所有codec写入索引文件，MongoFactory启动时直接读取，无需扫描类路径
+ * <p>
+ * 可通过-Amongo.orm.codegen=false关闭生成codec，-Amongo.orm.registry=全类名指定注册类，
+ * -Amongo.orm.index=false关闭生成索引
+ *
+ * @author chengshx
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions({CodecProcessor.OPTION_CODEGEN, CodecProcessor.OPTION_REGISTRY, CodecProcessor.OPTION_INDEX})
+public class CodecProcessor extends AbstractProcessor {
+
+    static final String OPTION_CODEGEN = "mongo.orm.codegen";
+    static final String OPTION_REGISTRY = "mongo.orm.registry";
+    static final String OPTION_INDEX = "mongo.orm.index";
+    static final String CODEC_SUFFIX = "GeneratedCodec";
+    private static final String DEFAULT_REGISTRY_PACKAGE = "top.newleaf.mongo.generated";
+    private static final String REGISTRY_NAME = "GeneratedCodecRegistry";
+    private static final String ID_FIELD = "_id";
+
+    /**
+     * 实体全类名 -> codec全类名
+     */
+    private final Map<String, String> codecs = new TreeMap<>();
+    private final Set<String> packages = new TreeSet<>();
+    private boolean registryWritten;
+
+    /**
+     * 本次编译的codec类名
+     */
+    private final Set<String> indexedCodecs = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        boolean codegen = isEnabled(OPTION_CODEGEN);
+        boolean index = isEnabled(OPTION_INDEX);
+        if (roundEnv.processingOver()) {
+            if (codegen && !codecs.isEmpty() && !registryWritten) {
+                writeRegistry();
+            }
+            if (index && !indexedCodecs.isEmpty()) {
+                writeIndex();
+            }
+            return false;
+        }
+        if (codegen) {
+            int count = codecs.size();
+            for (Element element : roundEnv.getElementsAnnotatedWith(Table.class)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    TypeElement entity = (TypeElement) element;
+                    if (isSupported(entity)) {
+                        writeCodec(entity);
+                    }
+                }
+            }
+            // 生成的codec不含@Table实体，没有新codec的一轮即可写入注册类，避免在最后一轮生成源文件
+            if (codecs.size() == count && !codecs.isEmpty() && !registryWritten) {
+                writeRegistry();
+            }
+        }
+        if (index) {
+            // 生成的codec在下一轮作为根元素出现，一并写入索引
+            TypeElement codecType = processingEnv.getElementUtils().getTypeElement(CodecIndex.CODEC_TYPE);
+            if (codecType != null) {
+                for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+                    collectCodecs(type, codecType);
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isEnabled(String option) {
+        return !"false".equalsIgnoreCase(processingEnv.getOptions().get(option));
+    }
+
+    /**
+     * 收集可被BeanCodecScanAction实例化的codec，包括静态内部类
+     *
+     * @param type
+     * @param codecType
+     */
+    private void collectCodecs(TypeElement type, TypeElement codecType) {
+        Types types = processingEnv.getTypeUtils();
+        Set<Modifier> modifiers = type.getModifiers();
+        if (type.getKind() == ElementKind.CLASS && modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.ABSTRACT)
+                && (type.getNestingKind() == NestingKind.TOP_LEVEL || modifiers.contains(Modifier.STATIC))
+                && types.isAssignable(types.erasure(type.asType()), types.erasure(codecType.asType()))
+                && hasPublicNoArgConstructor(type)) {
+            indexedCodecs.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+        }
+        for (TypeElement member : ElementFilter.typesIn(type.getEnclosedElements())) {
+            collectCodecs(member, codecType);
+        }
+    }
+
+    private static boolean hasPublicNoArgConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 写入codec索引，增量编译时保留此前索引中仍然存在的类
+     */
+    private void writeIndex() {
+        Filer filer = processingEnv.getFiler();
+        Set<String> names = new TreeSet<>(indexedCodecs);
+        try {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", CodecIndex.INDEX_LOCATION);
+            try (InputStream inputStream = existing.openInputStream()) {
+                for (String name : CodecIndex.read(inputStream)) {
+                    if (processingEnv.getElementUtils().getTypeElement(name.replace('$', '.')) != null) {
+                        names.add(name);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // 首次编译时索引不存在
+        }
+        try {
+            FileObject index = filer.createResource(StandardLocation.CLASS_OUTPUT, "", CodecIndex.INDEX_LOCATION);
+            try (Writer writer = new OutputStreamWriter(index.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# generated by " + CodecProcessor.class.getName() + "\n");
+                for (String name : names) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "生成codec索引失败 : " + e.getMessage());
+        }
+    }
+
+    private boolean isSupported(TypeElement entity) {
+        Set<Modifier> modifiers = entity.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT) || modifiers.contains(Modifier.PRIVATE)) {
+            note(entity, "跳过抽象或私有实体");
+            return false;
+        }
+        if (entity.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)) {
+            note(entity, "跳过非静态内部类实体");
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(entity.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        note(entity, "跳过无可访问的无参构造方法的实体");
+        return false;
+    }
+
+    private void writeCodec(TypeElement entity) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(entity).getQualifiedName().toString();
+        String entityName = entity.getQualifiedName().toString();
+        String codecSimpleName = getFlatName(entity) + CODEC_SUFFIX;
+        String codecName = packageName.isEmpty() ? codecSimpleName : packageName + "." + codecSimpleName;
+        List<Property> properties = getProperties(entity);
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import org.bson.BsonReader;\n")
+                .append("import org.bson.BsonType;\n")
+                .append("import org.bson.BsonWriter;\n")
+                .append("import org.bson.codecs.DecoderContext;\n")
+                .append("import org.bson.codecs.EncoderContext;\n")
+                .append("import org.bson.codecs.configuration.CodecRegistry;\n")
+                .append("import top.newleaf.mongo.codec.BeanCodec;\n")
+                .append("import top.newleaf.mongo.codec.Generated;\n")
+                .append("import top.newleaf.mongo.codec.PropertyModel;\n\n")
+                .append("/**\n * 由").append(CodecProcessor.class.getName()).append("根据").append(entityName).append("生成，请勿修改\n */\n")
+                .append("@Generated\n")
+                .append("public final class ").append(codecSimpleName).append(" extends BeanCodec<").append(entityName).append("> {\n\n");
+        for (Property property : properties) {
+            if (!property.isSimple()) {
+                source.append("    private final PropertyModel ").append(property.constant())
+                        .append(" = getProperty(").append(property.literal()).append(");\n");
+            }
+        }
+        source.append("\n    public ").append(codecSimpleName).append("() {\n")
+                .append("        this(com.mongodb.MongoClient.getDefaultCodecRegistry());\n")
+                .append("    }\n\n")
+                .append("    public ").append(codecSimpleName).append("(CodecRegistry codecRegistry) {\n")
+                .append("        super(").append(entityName).append(".class, codecRegistry);\n")
+                .append("    }\n\n");
+
+        // writeDocument
+        source.append("    @Override\n")
+                .append("    protected void writeDocument(BsonWriter writer, ").append(entityName).append(" value, EncoderContext encoderContext) {\n")
+                .append("        writer.writeStartDocument();\n");
+        for (Property property : properties) {
+            property.appendEncode(source);
+        }
+        source.append("        writer.writeEndDocument();\n")
+                .append("    }\n\n");
+
+        // readDocument
+        source.append("    @Override\n")
+                .append("    protected ").append(entityName).append(" readDocument(BsonReader reader, DecoderContext decoderContext) {\n")
+                .append("        ").append(entityName).append(" value = new ").append(entityName).append("();\n")
+                .append("        reader.readStartDocument();\n")
+                .append("        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {\n")
+                .append("            String name = reader.readName();\n")
+                .append("            BsonType bsonType = reader.getCurrentBsonType();\n")
+                .append("            switch (name) {\n");
+        for (Property property : properties) {
+            property.appendDecode(source);
+        }
+        source.append("                default:\n")
+                .append("                    reader.skipValue();\n")
+                .append("                    break;\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        reader.readEndDocument();\n")
+                .append("        return value;\n")
+                .append("    }\n")
+                .append("}\n");
+
+        if (writeSource(codecName, source, entity)) {
+            codecs.put(entityName, codecName);
+            packages.add(packageName);
+            if (registryWritten) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "codec注册类已生成，未包含" + codecName, entity);
+            }
+        }
+    }
+
+    /**
+     * 生成注册类，codecs()与扫描一样使用codec的无参构造方法，codecs(CodecRegistry)和get可指定嵌套字段使用的registry
+     */
+    private void writeRegistry() {
+        String registryName = processingEnv.getOptions().get(OPTION_REGISTRY);
+        if (registryName == null || registryName.isEmpty()) {
+            registryName = getCommonPackage() + "." + REGISTRY_NAME;
+        }
+        int index = registryName.lastIndexOf('.');
+        String packageName = index == -1 ? "" : registryName.substring(0, index);
+        String simpleName = registryName.substring(index + 1);
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import org.bson.codecs.Codec;\n")
+                .append("import org.bson.codecs.configuration.CodecProvider;\n")
+                .append("import org.bson.codecs.configuration.CodecRegistry;\n\n")
+                .append("import java.util.ArrayList;\n")
+                .append("import java.util.List;\n\n")
+                .append("/**\n * 由").append(CodecProcessor.class.getName()).append("生成的codec注册类，请勿修改\n */\n")
+                .append("public final class ").append(simpleName).append(" implements CodecProvider {\n\n")
+                .append("    /**\n     * 生成codec的实体\n     */\n")
+                .append("    public static List<Class<?>> entities() {\n")
+                .append("        List<Class<?>> entities = new ArrayList<>();\n");
+        for (String entityName : codecs.keySet()) {
+            source.append("        entities.add(").append(entityName).append(".class);\n");
+        }
+        source.append("        return entities;\n")
+                .append("    }\n\n")
+                .append("    /**\n     * 全部生成的codec，与扫描到的codec一样使用默认registry\n     */\n")
+                .append("    public static List<Codec<?>> codecs() {\n")
+                .append("        List<Codec<?>> codecs = new ArrayList<>();\n");
+        for (String codecName : codecs.values()) {
+            source.append("        codecs.add(new ").append(codecName).append("());\n");
+        }
+        source.append("        return codecs;\n")
+                .append("    }\n\n")
+                .append("    /**\n     * 全部生成的codec\n     */\n")
+                .append("    public static List<Codec<?>> codecs(CodecRegistry registry) {\n")
+                .append("        List<Codec<?>> codecs = new ArrayList<>();\n");
+        for (String codecName : codecs.values()) {
+            source.append("        codecs.add(new ").append(codecName).append("(registry));\n");
+        }
+        source.append("        return codecs;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    @SuppressWarnings(\"unchecked\")\n")
+                .append("    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {\n");
+        for (Map.Entry<String, String> entry : codecs.entrySet()) {
+            source.append("        if (clazz == ").append(entry.getKey()).append(".class) {\n")
+                    .append("            return (Codec<T>) new ").append(entry.getValue()).append("(registry);\n")
+                    .append("        }\n");
+        }
+        source.append("        return null;\n")
+                .append("    }\n")
+                .append("}\n");
+        registryWritten = true;
+        writeSource(registryName, source, null);
+    }
+
+    private boolean writeSource(String className, CharSequence source, Element origin) {
+        try {
+            Filer filer = processingEnv.getFiler();
+            Element[] origins = origin == null ? new Element[0] : new Element[]{origin};
+            try (Writer writer = filer.createSourceFile(className, origins).openWriter()) {
+                writer.write(source.toString());
+            }
+            return true;
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "生成" + className + "失败 : " + e.getMessage(), origin);
+            return false;
+        }
+    }
+
+    private List<Property> getProperties(TypeElement entity) {
+        Set<String> methods = new HashSet<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(entity.getEnclosedElements())) {
+            if (!method.getModifiers().contains(Modifier.PRIVATE) && !method.getModifiers().contains(Modifier.STATIC)) {
+                methods.add(method.getSimpleName() + "/" + method.getParameters().size());
+            }
+        }
+        List<Property> properties = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(entity.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC) || field.getAnnotation(Transient.class) != null) {
+                continue;
+            }
+            String name = field.getSimpleName().toString();
+            Column column = field.getAnnotation(Column.class);
+            String columnName;
+            if (field.getAnnotation(Id.class) != null) {
+                columnName = ID_FIELD;
+            } else {
+                columnName = column != null ? column.name() : BeanCodec.getColumnName(name);
+            }
+            String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            String getter = null;
+            if (methods.contains("get" + capitalized + "/0")) {
+                getter = "get" + capitalized;
+            } else if (methods.contains("is" + capitalized + "/0")) {
+                getter = "is" + capitalized;
+            }
+            String setter = methods.contains("set" + capitalized + "/1") ? "set" + capitalized : null;
+            // 压缩字段交给BeanCodec读写
+            boolean compressed = field.getAnnotation(Compressed.class) != null;
+            properties.add(new Property(name, columnName, field.asType(), getter, setter, compressed));
+        }
+        return properties;
+    }
+
+    /**
+     * 所有实体的公共包名
+     *
+     * @return
+     */
+    private String getCommonPackage() {
+        String common = null;
+        for (String pkg : packages) {
+            if (common == null) {
+                common = pkg;
+            } else {
+                while (!common.isEmpty() && !(pkg.equals(common) || pkg.startsWith(common + "."))) {
+                    int dot = common.lastIndexOf('.');
+                    common = dot == -1 ? "" : common.substring(0, dot);
+                }
+            }
+        }
+        return common == null || common.isEmpty() ? DEFAULT_REGISTRY_PACKAGE : common;
+    }
+
+    /**
+     * 内部类以下划线连接外部类名
+     *
+     * @param entity
+     * @return
+     */
+    private static String getFlatName(TypeElement entity) {
+        String name = entity.getSimpleName().toString();
+        Element enclosing = entity.getEnclosingElement();
+        while (enclosing instanceof TypeElement) {
+            name = enclosing.getSimpleName() + "_" + name;
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return name;
+    }
+
+    private void note(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message + " : " + element, element);
+    }
+
+    /**
+     * 实体字段，基本类型、包装类型、String和Date在生成代码中直接读写
+     */
+    private static class Property {
+
+        private final String name;
+        private final String column;
+        private final String type;
+        private final String getter;
+        private final String setter;
+        private final SimpleType simpleType;
+
+        Property(String name, String column, TypeMirror type, String getter, String setter, boolean compressed) {
+            this.name = name;
+            this.column = column;
+            this.type = type.toString();
+            this.getter = getter;
+            this.setter = setter;
+            SimpleType simple = SimpleType.of(type);
+            this.simpleType = getter == null || setter == null || compressed || ID_FIELD.equals(column) ? null : simple;
+        }
+
+        boolean isSimple() {
+            return simpleType != null;
+        }
+
+        String constant() {
+            return name + "Property";
+        }
+
+        String literal() {
+            return "\"" + column.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
+
+        void appendEncode(StringBuilder source) {
+            if (!isSimple()) {
+                source.append("        writeColumn(writer, value, ").append(constant()).append(", encoderContext);\n");
+                return;
+            }
+            String get = "value." + getter + "()";
+            if (simpleType.primitive) {
+                source.append("        writer.").append(simpleType.writeMethod).append("(").append(literal()).append(", ")
+                        .append(get).append(");\n");
+                return;
+            }
+            String local = name + "Value";
+            source.append("        ").append(type).append(" ").append(local).append(" = ").append(get).append(";\n")
+                    .append("        if (").append(local).append(" == null) {\n")
+                    .append("            writer.writeNull(").append(literal()).append(");\n")
+                    .append("        } else {\n")
+                    .append("            writer.").append(simpleType.writeMethod).append("(").append(literal()).append(", ")
+                    .append(local).append(simpleType.writeSuffix).append(");\n")
+                    .append("        }\n");
+        }
+
+        void appendDecode(StringBuilder source) {
+            source.append("                case ").append(literal()).append(":\n");
+            if (!isSimple()) {
+                source.append("                    readField(reader, value, ").append(constant()).append(", decoderContext);\n")
+                        .append("                    break;\n");
+                return;
+            }
+            source.append("                    if (").append(simpleType.condition).append(") {\n")
+                    .append("                        value.").append(setter).append("(").append(simpleType.read).append(");\n")
+                    .append("                    } else {\n")
+                    .append("                        readField(reader, value, getProperty(name), decoderContext);\n")
+                    .append("                    }\n")
+                    .append("                    break;\n");
+        }
+    }
+
+    private enum SimpleType {
+        INT(true, "writeInt32", "", "isNumber(bsonType)", "readInt(reader)"),
+        LONG(true, "writeInt64", "", "isNumber(bsonType)", "readLong(reader)"),
+        DOUBLE(true, "writeDouble", "", "isNumber(bsonType)", "readDouble(reader)"),
+        BOOLEAN(true, "writeBoolean", "", "bsonType == BsonType.BOOLEAN", "reader.readBoolean()"),
+        BOXED_INT(false, "writeInt32", "", "isNumber(bsonType)", "readInt(reader)"),
+        BOXED_LONG(false, "writeInt64", "", "isNumber(bsonType)", "readLong(reader)"),
+        BOXED_DOUBLE(false, "writeDouble", "", "isNumber(bsonType)", "readDouble(reader)"),
+        BOXED_BOOLEAN(false, "writeBoolean", "", "bsonType == BsonType.BOOLEAN", "reader.readBoolean()"),
+        STRING(false, "writeString", "", "bsonType == BsonType.STRING", "reader.readString()"),
+        DATE(false, "writeDateTime", ".getTime()", "bsonType == BsonType.DATE_TIME", "new java.util.Date(reader.readDateTime())");
+
+        private final boolean primitive;
+        private final String writeMethod;
+        private final String writeSuffix;
+        private final String condition;
+        private final String read;
+
+        SimpleType(boolean primitive, String writeMethod, String writeSuffix, String condition, String read) {
+            this.primitive = primitive;
+            this.writeMethod = writeMethod;
+            this.writeSuffix = writeSuffix;
+            this.condition = condition;
+            this.read = read;
+        }
+
+        static SimpleType of(TypeMirror type) {
+            TypeKind kind = type.getKind();
+            switch (kind) {
+                case INT:
+                    return INT;
+                case LONG:
+                    return LONG;
+                case DOUBLE:
+                    return DOUBLE;
+                case BOOLEAN:
+                    return BOOLEAN;
+                case DECLARED:
+                    switch (type.toString()) {
+                        case "java.lang.Integer":
+                            return BOXED_INT;
+                        case "java.lang.Long":
+                            return BOXED_LONG;
+                        case "java.lang.Double":
+                            return BOXED_DOUBLE;
+                        case "java.lang.Boolean":
+                            return BOXED_BOOLEAN;
+                        case "java.lang.String":
+                            return STRING;
+                        case "java.util.Date":
+                            return DATE;
+                        default:
+                            return null;
+                    }
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package top.newleaf.mongo.read;
+
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadConcernLevel;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读偏好、最大延迟和读关注，为null的配置不覆盖原有设置
+ *
+ * @author chengshx
+ */
+public class ReadConfig {
+
+    private static final String PRIMARY = "primary";
+
+    private String preference;
+
+    /**
+     * 单位秒
+     */
+    private Long maxStaleness;
+
+    private String concern;
+
+    /**
+     * 解析后的驱动对象，修改配置时重新解析
+     */
+    private volatile ReadPreference readPreference;
+    private volatile ReadConcern readConcern;
+
+    public ReadConfig() {
+    }
+
+    public ReadConfig(String preference, Long maxStaleness, String concern) {
+        this.preference = preference;
+        this.maxStaleness = maxStaleness;
+        this.concern = concern;
+    }
+
+    public static ReadConfig of(ReadRouting routing) {
+        return new ReadConfig(routing.preference().isEmpty() ? null : routing.preference(),
+                routing.maxStaleness() < 0 ? null : routing.maxStaleness(),
+                routing.concern().isEmpty() ? null : routing.concern());
+    }
+
+    /**
+     * 逐项合并，本配置中为null的属性沿用base，如实体只设置preference时沿用连接的maxStaleness
+     *
+     * @param base 被覆盖的配置，如连接的配置
+     * @return 合并后的新配置，base为null或没有配置时返回本配置
+     */
+    public ReadConfig merge(ReadConfig base) {
+        if (base == null || base.isEmpty()) {
+            return this;
+        }
+        return new ReadConfig(preference != null ? preference : base.preference,
+                maxStaleness != null ? maxStaleness : base.maxStaleness,
+                concern != null ? concern : base.concern);
+    }
+
+    /**
+     * 从节点读取
+     *
+     * @param maxStaleness 最大延迟，单位秒，为null时不限制
+     * @return
+     */
+    public static ReadConfig secondaryPreferred(Long maxStaleness) {
+        return new ReadConfig("secondaryPreferred", maxStaleness, null);
+    }
+
+    /**
+     * 应用到集合
+     *
+     * @param collection
+     * @return 未配置时返回原集合
+     */
+    public <T> MongoCollection<T> apply(MongoCollection<T> collection) {
+        ReadPreference readPreference = getReadPreference();
+        if (readPreference != null) {
+            collection = collection.withReadPreference(readPreference);
+        }
+        ReadConcern readConcern = getReadConcern();
+        if (readConcern != null) {
+            collection = collection.withReadConcern(readConcern);
+        }
+        return collection;
+    }
+
+    /**
+     * 应用到数据库
+     *
+     * @param database
+     * @return 未配置时返回原数据库
+     */
+    public MongoDatabase apply(MongoDatabase database) {
+        ReadPreference readPreference = getReadPreference();
+        if (readPreference != null) {
+            database = database.withReadPreference(readPreference);
+        }
+        ReadConcern readConcern = getReadConcern();
+        if (readConcern != null) {
+            database = database.withReadConcern(readConcern);
+        }
+        return database;
+    }
+
+    /**
+     * 是否没有任何配置
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return preference == null && maxStaleness == null && concern == null;
+    }
+
+    /**
+     * 驱动的读偏好，maxStaleness只对非primary的读偏好生效
+     *
+     * @return 未配置preference时返回null
+     */
+    public ReadPreference getReadPreference() {
+        ReadPreference value = readPreference;
+        if (value == null && preference != null) {
+            if (maxStaleness == null || PRIMARY.equals(preference)) {
+                value = ReadPreference.valueOf(preference);
+            } else {
+                value = ReadPreference.valueOf(preference, Collections.emptyList(), maxStaleness, TimeUnit.SECONDS);
+            }
+            readPreference = value;
+        }
+        return value;
+    }
+
+    /**
+     * 驱动的读关注
+     *
+     * @return 未配置时返回null
+     */
+    public ReadConcern getReadConcern() {
+        ReadConcern value = readConcern;
+        if (value == null && concern != null) {
+            value = new ReadConcern(ReadConcernLevel.fromString(concern));
+            readConcern = value;
+        }
+        return value;
+    }
+
+    public String getPreference() {
+        return preference;
+    }
+
+    public void setPreference(String preference) {
+        this.preference = preference;
+        this.readPreference = null;
+    }
+
+    public Long getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    public void setMaxStaleness(Long maxStaleness) {
+        this.maxStaleness = maxStaleness;
+        this.readPreference = null;
+    }
+
+    public String getConcern() {
+        return concern;
+    }
+
+    public void setConcern(String concern) {
+        this.concern = concern;
+        this.readConcern = null;
+    }
+
+    @Override
+    public String toString() {
+        return "{\"preference\":\"" + preference + "\", \"maxStaleness\":" + maxStaleness + ", \"concern\":\"" + concern + "\"}";
+    }
+}
@@ -0,0 +1,29 @@
+package top.newleaf.mongo.read;
+
+import java.lang.annotation.*;
+
+/**
+ * 实体的读取路由，覆盖连接的配置，未设置的属性沿用连接配置
+ *
+ * @author chengshx
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadRouting {
+
+    /**
+     * 读偏好：primary、primaryPreferred、secondary、secondaryPreferred、nearest
+     */
+    String preference() default "";
+
+    /**
+     * 从节点允许的最大延迟，单位秒，不小于90，只对非primary的读偏好有效
+     */
+    long maxStaleness() default -1;
+
+    /**
+     * 读关注级别：local、majority、linearizable
+     */
+    String concern() default "";
+}
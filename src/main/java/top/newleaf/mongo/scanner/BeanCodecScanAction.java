@@ -6,23 +6,39 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import top.newleaf.mongo.codec.BeanCodec;
 
-import java.util.HashSet;
+import java.lang.reflect.Modifier;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * 收集扫描到的codec，加载类时不执行静态初始化，只实例化codec本身，线程安全
+ *
  * @author chengshx
  */
 public class BeanCodecScanAction implements IScanAction {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(BeanCodecScanAction.class);
 
-    private Set<Codec> codecSet = new HashSet<>();
+    private final Set<Codec> codecSet = ConcurrentHashMap.newKeySet();
+    private final ClassLoader loader;
+
+    public BeanCodecScanAction() {
+        this(Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * @param loader 加载扫描到的类，扫描在其他线程中执行，需提前指定
+     */
+    public BeanCodecScanAction(ClassLoader loader) {
+        this.loader = loader;
+    }
 
     @Override
     public void doAction(String className) {
         try {
-            Class<?> clazz = Class.forName(className);
-            if (CollectibleCodec.class.isAssignableFrom(clazz) && BeanCodec.class != clazz) {
+            Class<?> clazz = Class.forName(className, false, loader);
+            if (CollectibleCodec.class.isAssignableFrom(clazz) && BeanCodec.class != clazz
+                    && !clazz.isInterface() && !Modifier.isAbstract(clazz.getModifiers())) {
                 codecSet.add((Codec) clazz.newInstance());
                 LOGGER.info("add codec : {}", className);
             }
@@ -1,109 +1,235 @@
 package top.newleaf.mongo.scanner;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.JarURLConnection;
 import java.net.URL;
-import java.util.Enumeration;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 /**
+ * 在fork-join线程池中并行扫描目录和jar，每个jar只遍历一次，扫描到的类交给IScanAction处理
+ *
  * @author chengshx
  */
 public class ClassScanner {
 
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String JAR_SEPARATOR = "!/";
+
     /**
      * 批量扫描包
      *
      * @param scanPackages 扫描路径
      * @param recursive    是否扫描子包
+     * @param scanAction   扫描到类的操作，会被多个线程并发调用
      * @throws Exception
      */
     public static void scan(Set<String> scanPackages, boolean recursive, IScanAction scanAction) throws Exception {
+        scan(scanPackages, recursive, scanAction, Collections.emptySet());
+    }
+
+    /**
+     * 批量扫描包，跳过指定的类路径根
+     *
+     * @param scanPackages 扫描路径
+     * @param recursive    是否扫描子包
+     * @param scanAction   扫描到类的操作，会被多个线程并发调用
+     * @param skipRoots    不扫描的类路径根，如CodecIndex已处理的"jar:file:/app.jar!/"
+     * @throws Exception
+     */
+    public static void scan(Set<String> scanPackages, boolean recursive, IScanAction scanAction, Set<String> skipRoots) throws Exception {
         if (scanPackages != null && !scanPackages.isEmpty()) {
-            for (String scanPackage : scanPackages) {
-                String scanPath = scanPackage.replaceAll("\\.", "/");
-                ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            List<RecursiveAction> tasks = new ArrayList<>();
+            // 同一个jar的所有扫描路径合并为一个任务
+            Map<String, JarTask> jarTasks = new LinkedHashMap<>();
+            for (String scanPackage : normalize(scanPackages, recursive)) {
+                String scanPath = scanPackage.replace('.', '/');
                 Enumeration<URL> urls = loader.getResources(scanPath);
                 while (urls.hasMoreElements()) {
                     URL url = urls.nextElement();
-                    if (url != null) {
+                    if (url != null && !skipRoots.contains(getRoot(url.toString(), scanPath))) {
                         String protocol = url.getProtocol();
-                        String pkgPath = url.getPath();
                         if ("file".equals(protocol)) {
-                            scanClassNameFromDir(scanPackage, pkgPath, recursive, scanAction);
+                            tasks.add(new DirTask(scanPackage, new File(url.getPath()), recursive, scanAction));
                         } else if ("jar".equals(protocol)) {
-                            scanClassNameFromJar(scanPackage, url, recursive, scanAction);
+                            String jarKey = getJarKey(url.toString());
+                            JarTask jarTask = jarTasks.get(jarKey);
+                            if (jarTask == null) {
+                                jarTask = new JarTask(url, recursive, scanAction);
+                                jarTasks.put(jarKey, jarTask);
+                                tasks.add(jarTask);
+                            }
+                            jarTask.packages.add(scanPackage);
                         }
                     }
                 }
             }
+            try {
+                ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(tasks);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * jar的标识，取最后一个"!/"之前的部分，Spring Boot等嵌套jar中的每个内层jar和BOOT-INF/classes各自扫描
+     *
+     * @param path jar协议的url
+     * @return
+     */
+    static String getJarKey(String path) {
+        int index = path.lastIndexOf(JAR_SEPARATOR);
+        return index == -1 ? path : path.substring(0, index);
+    }
+
+    /**
+     * 包所在的类路径根，与CodecIndex返回的格式一致
+     *
+     * @param path     包的url
+     * @param scanPath 包路径，如"top/newleaf"
+     * @return
+     */
+    static String getRoot(String path, String scanPath) {
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
         }
+        return path.endsWith(scanPath) ? path.substring(0, path.length() - scanPath.length()) : path;
     }
 
-    private static void scanClassNameFromDir(String scanPackage, String pkgPath, final boolean recursive, IScanAction scanAction) {
-        // 接收 .class 文件 或 类文件夹
-        File[] files = new File(pkgPath).listFiles(file -> (file.isFile() && file.getName().endsWith(".class")) || (recursive && file.isDirectory()));
-        if (files != null) {
-            for (File f : files) {
-                String fileName = f.getName();
-                if (f.isFile()) {
-                    String clazzName = getClassName(scanPackage, fileName);
-                    scanAction.doAction(clazzName);
-                } else {
-                    if (recursive) {
-                        String subPkgName = scanPackage + "." + fileName;
-                        String subPkgPath = pkgPath + "/" + fileName;
-                        scanClassNameFromDir(subPkgName, subPkgPath, recursive, scanAction);
+    /**
+     * 递归扫描时去掉已被父包覆盖的子包，避免重复扫描
+     *
+     * @param scanPackages
+     * @param recursive
+     * @return
+     */
+    private static Set<String> normalize(Set<String> scanPackages, boolean recursive) {
+        Set<String> packages = new TreeSet<>(scanPackages);
+        if (recursive) {
+            Iterator<String> iterator = packages.iterator();
+            while (iterator.hasNext()) {
+                String pkg = iterator.next();
+                for (String parent : scanPackages) {
+                    if (pkg.startsWith(parent + ".")) {
+                        iterator.remove();
+                        break;
                     }
                 }
             }
         }
+        return packages;
     }
 
-    private static void scanClassNameFromJar(String scanPackage, URL url, final boolean recursive, IScanAction scanAction) throws Exception {
-        JarURLConnection jarURLConnection = (JarURLConnection) url.openConnection();
-        JarFile jarFile = jarURLConnection.getJarFile();
-        Enumeration<JarEntry> jarEntries = jarFile.entries();
-        while (jarEntries.hasMoreElements()) {
-            JarEntry jarEntry = jarEntries.nextElement();
-            String jarEntryName = jarEntry.getName();
-            if (jarEntry.isDirectory()) {
-                continue;
-            }
-            if (jarEntryName.endsWith(".class")) {
-                String clazzName = jarEntryName.substring(0, jarEntryName.indexOf('.')).replace('/', '.');
-                if (recursive) {
-                    if (clazzName.startsWith(scanPackage)) {
-                        scanAction.doAction(clazzName);
-                    }
-                } else {
-                    int index = clazzName.lastIndexOf(".");
-                    String pkg;
-                    if (index != -1) {
-                        pkg = clazzName.substring(0, index);
+    private static String getClassName(String pkgName, String fileName) {
+        String clazz = fileName.substring(0, fileName.length() - CLASS_SUFFIX.length());
+        return pkgName.isEmpty() ? clazz : pkgName + "." + clazz;
+    }
+
+    private static boolean isClassFile(String fileName) {
+        return fileName.endsWith(CLASS_SUFFIX) && !fileName.endsWith("package-info.class") && !fileName.endsWith("module-info.class");
+    }
+
+    /**
+     * 扫描目录，子目录拆分为子任务并行处理
+     */
+    private static class DirTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final String scanPackage;
+        private final File dir;
+        private final boolean recursive;
+        private final IScanAction scanAction;
+
+        DirTask(String scanPackage, File dir, boolean recursive, IScanAction scanAction) {
+            this.scanPackage = scanPackage;
+            this.dir = dir;
+            this.recursive = recursive;
+            this.scanAction = scanAction;
+        }
+
+        @Override
+        protected void compute() {
+            // 接收 .class 文件 或 类文件夹
+            File[] files = dir.listFiles(file -> (file.isFile() && isClassFile(file.getName())) || (recursive && file.isDirectory()));
+            if (files != null) {
+                List<DirTask> subTasks = new ArrayList<>();
+                for (File f : files) {
+                    String fileName = f.getName();
+                    if (f.isFile()) {
+                        scanAction.doAction(getClassName(scanPackage, fileName));
                     } else {
-                        pkg = "";
-                    }
-                    if (pkg.equals(scanPackage)) {
-                        scanAction.doAction(clazzName);
+                        subTasks.add(new DirTask(scanPackage + "." + fileName, f, recursive, scanAction));
                     }
                 }
+                invokeAll(subTasks);
             }
         }
     }
 
-    private static String getClassName(String pkgName, String fileName) {
-        int endIndex = fileName.lastIndexOf(".");
-        String clazz = null;
-        if (endIndex >= 0) {
-            clazz = fileName.substring(0, endIndex);
+    /**
+     * 一次遍历jar中的所有条目，匹配全部扫描路径
+     */
+    private static class JarTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final URL url;
+        private final boolean recursive;
+        private final IScanAction scanAction;
+        private final Set<String> packages = new HashSet<>();
+
+        JarTask(URL url, boolean recursive, IScanAction scanAction) {
+            this.url = url;
+            this.recursive = recursive;
+            this.scanAction = scanAction;
         }
-        String clazzName = null;
-        if (clazz != null) {
-            clazzName = pkgName + "." + clazz;
+
+        @Override
+        protected void compute() {
+            try {
+                JarURLConnection jarURLConnection = (JarURLConnection) url.openConnection();
+                JarFile jarFile = jarURLConnection.getJarFile();
+                Enumeration<JarEntry> jarEntries = jarFile.entries();
+                while (jarEntries.hasMoreElements()) {
+                    JarEntry jarEntry = jarEntries.nextElement();
+                    String jarEntryName = jarEntry.getName();
+                    if (jarEntry.isDirectory() || !isClassFile(jarEntryName)) {
+                        continue;
+                    }
+                    int index = jarEntryName.lastIndexOf('/');
+                    String pkg = index == -1 ? "" : jarEntryName.substring(0, index).replace('/', '.');
+                    if (matches(pkg)) {
+                        scanAction.doAction(getClassName(pkg, jarEntryName.substring(index + 1)));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private boolean matches(String pkg) {
+            if (packages.contains(pkg)) {
+                return true;
+            }
+            if (recursive) {
+                for (String scanPackage : packages) {
+                    if (pkg.startsWith(scanPackage) && pkg.charAt(scanPackage.length()) == '.') {
+                        return true;
+                    }
+                }
+            }
+            return false;
         }
-        return clazzName;
     }
 }
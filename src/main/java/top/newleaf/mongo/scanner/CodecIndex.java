@@ -0,0 +1,111 @@
+package top.newleaf.mongo.scanner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 编译期生成的codec索引，存在索引的类路径根不再扫描
+ *
+ * @author chengshx
+ */
+public class CodecIndex {
+
+    /**
+     * 索引文件位置，每行一个codec类名，#开头为注释
+     */
+    public static final String INDEX_LOCATION = "META-INF/mongo-orm/codecs";
+    /**
+     * 写入索引的codec类型
+     */
+    public static final String CODEC_TYPE = "org.bson.codecs.CollectibleCodec";
+
+    /**
+     * 按索引处理扫描路径下的codec
+     * <p>
+     * 索引只覆盖包含索引文件的类路径根，未启用注解处理编译的jar和模块需调用ClassScanner跳过返回的类路径根继续扫描
+     *
+     * @param scanPackages 扫描路径
+     * @param recursive    是否包含子包
+     * @param scanAction   对索引中类的具体操作
+     * @return 包含索引的类路径根，如"jar:file:/app.jar!/"，不存在索引时返回空集合
+     * @throws IOException
+     */
+    public static Set<String> scan(Set<String> scanPackages, boolean recursive, IScanAction scanAction) throws IOException {
+        Enumeration<URL> urls = Thread.currentThread().getContextClassLoader().getResources(INDEX_LOCATION);
+        Set<String> roots = new LinkedHashSet<>();
+        Set<String> classNames = new LinkedHashSet<>();
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            String path = url.toString();
+            roots.add(path.substring(0, path.length() - INDEX_LOCATION.length()));
+            try (InputStream inputStream = url.openStream()) {
+                classNames.addAll(read(inputStream));
+            }
+        }
+        if (scanPackages != null && !scanPackages.isEmpty()) {
+            for (String className : classNames) {
+                if (inPackages(className, scanPackages, recursive)) {
+                    scanAction.doAction(className);
+                }
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * 读取类路径下全部索引文件
+     *
+     * @param loader
+     * @return 不存在索引时返回null
+     * @throws IOException
+     */
+    public static Set<String> load(ClassLoader loader) throws IOException {
+        Enumeration<URL> urls = loader.getResources(INDEX_LOCATION);
+        if (!urls.hasMoreElements()) {
+            return null;
+        }
+        Set<String> classNames = new LinkedHashSet<>();
+        while (urls.hasMoreElements()) {
+            try (InputStream inputStream = urls.nextElement().openStream()) {
+                classNames.addAll(read(inputStream));
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * 解析索引内容
+     *
+     * @param inputStream
+     * @return
+     * @throws IOException
+     */
+    public static List<String> read(InputStream inputStream) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                classNames.add(line);
+            }
+        }
+        return classNames;
+    }
+
+    private static boolean inPackages(String className, Set<String> scanPackages, boolean recursive) {
+        int index = className.lastIndexOf('.');
+        String pkg = index == -1 ? "" : className.substring(0, index);
+        for (String scanPackage : scanPackages) {
+            if (pkg.equals(scanPackage) || (recursive && pkg.startsWith(scanPackage + "."))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
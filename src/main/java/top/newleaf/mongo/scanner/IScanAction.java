@@ -1,12 +1,14 @@
 package top.newleaf.mongo.scanner;
 
 /**
+ * 扫描到class后的操作，ClassScanner会在多个线程中并发调用，实现类需保证线程安全
+ *
  * @author chengshx
  */
 public interface IScanAction {
 
     /**
-     * 扫到class的具体操作
+     * 扫到class的具体操作，可能被并发调用
      * @param className 类名称
      */
     void doAction(String className);
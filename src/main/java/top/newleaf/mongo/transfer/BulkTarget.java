@@ -0,0 +1,36 @@
+package top.newleaf.mongo.transfer;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+
+import java.util.List;
+
+/**
+ * 导入的目标，多个工作线程并发调用，实现需线程安全
+ * <p>
+ * 测试时可使用Collections.synchronizedList(list)::addAll代替集合
+ *
+ * @author chengshx
+ */
+@FunctionalInterface
+public interface BulkTarget<T> {
+
+    /**
+     * 写入一批文档
+     *
+     * @param documents
+     */
+    void insert(List<T> documents);
+
+    /**
+     * 无序批量插入集合，某个文档失败不影响同批次的其余文档
+     *
+     * @param collection
+     * @param <T>
+     * @return
+     */
+    static <T> BulkTarget<T> of(MongoCollection<T> collection) {
+        InsertManyOptions options = new InsertManyOptions().ordered(false);
+        return documents -> collection.insertMany(documents, options);
+    }
+}
@@ -0,0 +1,89 @@
+package top.newleaf.mongo.transfer;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 导出集合，游标只读取原始bson，不解码为实体
+ *
+ * @author chengshx
+ */
+public class DataExporter {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(DataExporter.class);
+
+    private final TransferConfig config;
+
+    public DataExporter(TransferConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 导出符合条件的文档
+     *
+     * @param collection
+     * @param filter
+     * @param sink       不会被关闭
+     * @return
+     * @throws IOException
+     */
+    public TransferProgress export(MongoCollection<?> collection, Bson filter, DocumentSink sink) throws IOException {
+        try (MongoCursor<RawBsonDocument> cursor = collection.withDocumentClass(RawBsonDocument.class)
+                .find(filter).batchSize(config.getBatchSize()).iterator()) {
+            return export(cursor, sink, collection.getNamespace().getFullName());
+        }
+    }
+
+    /**
+     * 导出任意来源的文档，可用于内存中的文档列表
+     *
+     * @param documents
+     * @param sink      不会被关闭
+     * @return
+     * @throws IOException
+     */
+    public TransferProgress export(Iterable<RawBsonDocument> documents, DocumentSink sink) throws IOException {
+        return export(documents.iterator(), sink, "iterable");
+    }
+
+    private TransferProgress export(Iterator<RawBsonDocument> documents, DocumentSink sink, String name) throws IOException {
+        TransferProgress progress = new TransferProgress();
+        int batchSize = config.getBatchSize();
+        long lastLog = System.currentTimeMillis();
+        int count = 0;
+        long bytes = 0;
+        while (documents.hasNext()) {
+            RawBsonDocument document = documents.next();
+            sink.write(document);
+            bytes += document.getByteBuffer().remaining();
+            if (++count == batchSize) {
+                progress.record(count, bytes);
+                count = 0;
+                bytes = 0;
+                lastLog = logProgress(name, progress, lastLog);
+            }
+        }
+        if (count > 0) {
+            progress.record(count, bytes);
+        }
+        progress.finish();
+        LOGGER.info("导出完成，{} : {}", name, progress);
+        return progress;
+    }
+
+    private long logProgress(String name, TransferProgress progress, long lastLog) {
+        long now = System.currentTimeMillis();
+        if (config.getProgressInterval() > 0 && now - lastLog >= config.getProgressInterval()) {
+            LOGGER.info("正在导出，{} : {}", name, progress);
+            return now;
+        }
+        return lastLog;
+    }
+}
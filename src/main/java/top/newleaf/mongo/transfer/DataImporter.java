@@ -0,0 +1,136 @@
+package top.newleaf.mongo.transfer;
+
+import com.mongodb.MongoBulkWriteException;
+import org.bson.RawBsonDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * 导入文档，调用线程切分文档块，parallelism个工作线程并行解析、转换和写入
+ * <p>
+ * 同时处理的块数不超过parallelism的两倍，内存占用与文件大小无关；
+ * 写入失败的文档(如重复的_id)计入failed后继续，其余异常停止导入并抛出
+ *
+ * @author chengshx
+ */
+public class DataImporter {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(DataImporter.class);
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final TransferConfig config;
+
+    public DataImporter(TransferConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 不经过实体直接写入原始文档
+     *
+     * @param source 不会被关闭
+     * @param target
+     * @return
+     * @throws IOException
+     */
+    public TransferProgress importTo(DocumentSource source, BulkTarget<RawBsonDocument> target) throws IOException {
+        return importTo(source, Function.identity(), target);
+    }
+
+    /**
+     * 在工作线程中将文档转换后写入，如用BeanCodec解码为实体
+     *
+     * @param source    不会被关闭
+     * @param converter 需线程安全
+     * @param target
+     * @return
+     * @throws IOException
+     */
+    public <T> TransferProgress importTo(DocumentSource source, Function<RawBsonDocument, T> converter, BulkTarget<T> target) throws IOException {
+        TransferProgress progress = new TransferProgress();
+        int parallelism = Math.max(1, config.getParallelism());
+        Semaphore permits = new Semaphore(parallelism * 2);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        String poolName = "mongo-import-" + POOL_NUMBER.incrementAndGet() + "-";
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, poolName + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long lastLog = System.currentTimeMillis();
+        try {
+            DocumentSource.Chunk chunk;
+            while (failure.get() == null && (chunk = source.next(config.getBatchSize())) != null) {
+                permits.acquire();
+                DocumentSource.Chunk current = chunk;
+                executor.execute(() -> {
+                    try {
+                        if (failure.get() == null) {
+                            write(current, converter, target, progress);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+                lastLog = logProgress(progress, lastLog);
+            }
+            // 等待全部块写入完成
+            permits.acquire(parallelism * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } finally {
+            executor.shutdownNow();
+        }
+        progress.finish();
+        Throwable e = failure.get();
+        if (e != null) {
+            LOGGER.error("导入失败 : {}", progress);
+            throw new IllegalStateException("导入失败 : " + progress, e);
+        }
+        LOGGER.info("导入完成 : {}", progress);
+        return progress;
+    }
+
+    private static <T> void write(DocumentSource.Chunk chunk, Function<RawBsonDocument, T> converter, BulkTarget<T> target, TransferProgress progress) {
+        List<RawBsonDocument> documents = chunk.decode();
+        List<T> batch = new ArrayList<>(documents.size());
+        long bytes = 0;
+        for (RawBsonDocument document : documents) {
+            bytes += document.getByteBuffer().remaining();
+            batch.add(converter.apply(document));
+        }
+        try {
+            target.insert(batch);
+            progress.record(batch.size(), bytes);
+        } catch (MongoBulkWriteException e) {
+            // 无序写入时其余文档已写入
+            int failed = e.getWriteErrors().size();
+            LOGGER.warn("部分文档写入失败，failed = {}, first = {}", failed, e.getWriteErrors().get(0).getMessage());
+            progress.record(batch.size() - failed, bytes);
+            progress.recordFailed(failed);
+        }
+    }
+
+    private long logProgress(TransferProgress progress, long lastLog) {
+        long now = System.currentTimeMillis();
+        if (config.getProgressInterval() > 0 && now - lastLog >= config.getProgressInterval()) {
+            LOGGER.info("正在导入 : {}", progress);
+            return now;
+        }
+        return lastLog;
+    }
+}
@@ -0,0 +1,22 @@
+package top.newleaf.mongo.transfer;
+
+import org.bson.RawBsonDocument;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 导出的目标，由导出线程单线程调用
+ *
+ * @author chengshx
+ */
+public interface DocumentSink extends Closeable {
+
+    /**
+     * 写入一个文档
+     *
+     * @param document
+     * @throws IOException
+     */
+    void write(RawBsonDocument document) throws IOException;
+}
@@ -0,0 +1,37 @@
+package top.newleaf.mongo.transfer;
+
+import org.bson.RawBsonDocument;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 导入的来源，读取线程只负责切分出文档块，块的解析在导入的工作线程中进行
+ *
+ * @author chengshx
+ */
+public interface DocumentSource extends Closeable {
+
+    /**
+     * 读取下一块
+     *
+     * @param maxDocuments 块中最多的文档数
+     * @return 读完时返回null
+     * @throws IOException
+     */
+    Chunk next(int maxDocuments) throws IOException;
+
+    /**
+     * 未解析的文档块
+     */
+    interface Chunk {
+
+        /**
+         * 解析块中的文档，可在任意线程中调用
+         *
+         * @return
+         */
+        List<RawBsonDocument> decode();
+    }
+}
@@ -0,0 +1,91 @@
+package top.newleaf.mongo.transfer;
+
+import org.bson.RawBsonDocument;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 写入本地文件，文档先写入直接缓冲区，缓冲区满时整块写入FileChannel
+ * <p>
+ * BSON格式直接复制文档的字节，NDJSON格式每行一个extended json文档
+ *
+ * @author chengshx
+ */
+public class FileDocumentSink implements DocumentSink {
+
+    private static final JsonWriterSettings JSON_SETTINGS = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+    private static final byte NEW_LINE = '\n';
+
+    private final FileChannel channel;
+    private final TransferFormat format;
+    private final ByteBuffer buffer;
+
+    /**
+     * 按扩展名判断格式，已存在的文件被覆盖
+     *
+     * @param path
+     * @param bufferSize 缓冲区大小
+     * @throws IOException
+     */
+    public FileDocumentSink(Path path, int bufferSize) throws IOException {
+        this(path, TransferFormat.of(path), bufferSize);
+    }
+
+    public FileDocumentSink(Path path, TransferFormat format, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.format = format;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @Override
+    public void write(RawBsonDocument document) throws IOException {
+        if (format == TransferFormat.BSON) {
+            write(document.getByteBuffer().asNIO());
+        } else {
+            byte[] json = document.toJson(JSON_SETTINGS).getBytes(StandardCharsets.UTF_8);
+            write(ByteBuffer.wrap(json));
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put(NEW_LINE);
+        }
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        if (bytes.remaining() > buffer.remaining()) {
+            flush();
+            if (bytes.remaining() > buffer.capacity()) {
+                // 超过缓冲区的文档直接写入
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                return;
+            }
+        }
+        buffer.put(bytes);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
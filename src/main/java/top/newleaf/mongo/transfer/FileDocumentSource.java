@@ -0,0 +1,153 @@
+package top.newleaf.mongo.transfer;
+
+import org.bson.RawBsonDocument;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读取本地文件
+ * <p>
+ * BSON格式按文档长度切分字节，NDJSON格式按行切分，json解析在Chunk.decode中进行
+ *
+ * @author chengshx
+ */
+public class FileDocumentSource implements DocumentSource {
+
+    /**
+     * 服务端文档大小上限16MB，留出余量用于校验损坏的长度
+     */
+    private static final int MAX_DOCUMENT_SIZE = 48 * 1024 * 1024;
+    private static final int MIN_DOCUMENT_SIZE = 5;
+
+    private final FileChannel channel;
+    private final TransferFormat format;
+    private final BufferedReader reader;
+    private ByteBuffer buffer;
+    private boolean eof;
+
+    /**
+     * 按扩展名判断格式
+     *
+     * @param path
+     * @param bufferSize 缓冲区大小
+     * @throws IOException
+     */
+    public FileDocumentSource(Path path, int bufferSize) throws IOException {
+        this(path, TransferFormat.of(path), bufferSize);
+    }
+
+    public FileDocumentSource(Path path, TransferFormat format, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.format = format;
+        if (format == TransferFormat.BSON) {
+            this.buffer = ByteBuffer.allocate(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+            this.buffer.flip();
+            this.reader = null;
+        } else {
+            this.reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), bufferSize), bufferSize);
+        }
+    }
+
+    @Override
+    public Chunk next(int maxDocuments) throws IOException {
+        return format == TransferFormat.BSON ? nextBson(maxDocuments) : nextJson(maxDocuments);
+    }
+
+    private Chunk nextBson(int maxDocuments) throws IOException {
+        List<byte[]> documents = new ArrayList<>(maxDocuments);
+        while (documents.size() < maxDocuments) {
+            if (!fill(4)) {
+                if (buffer.hasRemaining()) {
+                    throw new EOFException("文件结尾有不完整的文档，remaining = " + buffer.remaining());
+                }
+                break;
+            }
+            int length = buffer.getInt(buffer.position());
+            if (length < MIN_DOCUMENT_SIZE || length > MAX_DOCUMENT_SIZE) {
+                throw new IOException("无效的文档长度 : " + length + ", position = " + (channel.position() - buffer.remaining()));
+            }
+            if (!fill(length)) {
+                throw new EOFException("文件在文档中间结束，length = " + length);
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            documents.add(bytes);
+        }
+        if (documents.isEmpty()) {
+            return null;
+        }
+        return () -> {
+            List<RawBsonDocument> result = new ArrayList<>(documents.size());
+            for (byte[] bytes : documents) {
+                result.add(new RawBsonDocument(bytes));
+            }
+            return result;
+        };
+    }
+
+    /**
+     * 保证缓冲区中至少有length个字节，文档大于缓冲区时扩容
+     *
+     * @param length
+     * @return 文件已读完且剩余字节不足时返回false
+     * @throws IOException
+     */
+    private boolean fill(int length) throws IOException {
+        if (buffer.remaining() >= length) {
+            return true;
+        }
+        if (length > buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < length && !eof) {
+            if (channel.read(buffer) < 0) {
+                eof = true;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= length;
+    }
+
+    private Chunk nextJson(int maxDocuments) throws IOException {
+        List<String> lines = new ArrayList<>(maxDocuments);
+        String line;
+        while (lines.size() < maxDocuments && (line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                lines.add(line);
+            }
+        }
+        if (lines.isEmpty()) {
+            return null;
+        }
+        return () -> {
+            List<RawBsonDocument> result = new ArrayList<>(lines.size());
+            for (String json : lines) {
+                result.add(RawBsonDocument.parse(json));
+            }
+            return result;
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+        channel.close();
+    }
+}
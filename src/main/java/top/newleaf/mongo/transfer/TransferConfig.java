@@ -0,0 +1,58 @@
+package top.newleaf.mongo.transfer;
+
+/**
+ * 导入导出配置
+ *
+ * @author chengshx
+ */
+public class TransferConfig {
+
+    /**
+     * 导出时游标每批拉取的文档数，导入时每批写入的文档数
+     */
+    private int batchSize = 1000;
+    /**
+     * 导入时并行解析和写入的线程数
+     */
+    private int parallelism = 4;
+    /**
+     * 文件读写缓冲区大小，单位字节
+     */
+    private int bufferSize = 1 << 20;
+    /**
+     * 输出进度日志的间隔，单位毫秒，小于等于0时不输出
+     */
+    private long progressInterval = 10000;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public long getProgressInterval() {
+        return progressInterval;
+    }
+
+    public void setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+    }
+}
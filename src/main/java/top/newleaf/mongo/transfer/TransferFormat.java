@@ -0,0 +1,34 @@
+package top.newleaf.mongo.transfer;
+
+import java.nio.file.Path;
+
+/**
+ * 导出文件格式
+ *
+ * @author chengshx
+ */
+public enum TransferFormat {
+
+    /**
+     * 连续的bson文档，与mongodump的.bson文件相同
+     */
+    BSON,
+    /**
+     * 每行一个extended json文档
+     */
+    NDJSON;
+
+    /**
+     * 按扩展名判断格式，.json、.ndjson、.jsonl为NDJSON，其余为BSON
+     *
+     * @param path
+     * @return
+     */
+    public static TransferFormat of(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        if (name.endsWith(".json") || name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        return BSON;
+    }
+}
@@ -0,0 +1,82 @@
+package top.newleaf.mongo.transfer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 导入导出进度，可在其他线程中读取
+ *
+ * @author chengshx
+ */
+public class TransferProgress {
+
+    private final long startTime = System.nanoTime();
+    private final LongAdder documents = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile long endTime;
+
+    void record(long documentCount, long byteCount) {
+        documents.add(documentCount);
+        bytes.add(byteCount);
+        batches.increment();
+    }
+
+    void recordFailed(long count) {
+        failed.add(count);
+    }
+
+    void finish() {
+        endTime = System.nanoTime();
+    }
+
+    /**
+     * 已处理的文档数，导入时为写入成功的文档数
+     *
+     * @return
+     */
+    public long getDocuments() {
+        return documents.sum();
+    }
+
+    /**
+     * 已处理文档的bson字节数
+     *
+     * @return
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * 写入失败的文档数，如重复的_id
+     *
+     * @return
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public boolean isFinished() {
+        return endTime != 0;
+    }
+
+    public long getElapsedMillis() {
+        return ((endTime != 0 ? endTime : System.nanoTime()) - startTime) / 1000000;
+    }
+
+    public double getDocumentsPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : getDocuments() * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("documents = %d, failed = %d, bytes = %d, batches = %d, elapsed = %dms, rate = %.0f/s",
+                getDocuments(), getFailed(), getBytes(), getBatches(), getElapsedMillis(), getDocumentsPerSecond());
+    }
+}
@@ -0,0 +1,93 @@
+package top.newleaf.mongo.transfer;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import com.mongodb.client.MongoCollection;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 命令行导入导出工具，不经过实体直接读写原始文档
+ * <pre>
+ * export --uri mongodb://localhost --db test --collection comment --file comment.bson [--filter {...}]
+ * import --uri mongodb://localhost --db test --collection comment --file comment.ndjson [--parallelism 8]
+ * </pre>
+ * 公共参数：--format bson|ndjson(默认按扩展名)、--batch-size、--buffer-size、--progress-interval(毫秒)
+ *
+ * @author chengshx
+ */
+public class TransferTool {
+
+    private static final String USAGE = "usage: export|import --uri <uri> --db <db> --collection <collection> --file <path>"
+            + " [--format bson|ndjson] [--filter <json>] [--batch-size <n>] [--parallelism <n>] [--buffer-size <bytes>] [--progress-interval <ms>]";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !("export".equals(args[0]) || "import".equals(args[0]))) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        Map<String, String> options = parseOptions(args);
+        String uri = required(options, "uri");
+        String db = required(options, "db");
+        String collectionName = required(options, "collection");
+        Path file = Paths.get(required(options, "file"));
+        TransferFormat format = options.containsKey("format")
+                ? TransferFormat.valueOf(options.get("format").toUpperCase()) : TransferFormat.of(file);
+        TransferConfig config = new TransferConfig();
+        if (options.containsKey("batch-size")) {
+            config.setBatchSize(Integer.parseInt(options.get("batch-size")));
+        }
+        if (options.containsKey("parallelism")) {
+            config.setParallelism(Integer.parseInt(options.get("parallelism")));
+        }
+        if (options.containsKey("buffer-size")) {
+            config.setBufferSize(Integer.parseInt(options.get("buffer-size")));
+        }
+        if (options.containsKey("progress-interval")) {
+            config.setProgressInterval(Long.parseLong(options.get("progress-interval")));
+        }
+        TransferProgress progress;
+        try (MongoClient client = new MongoClient(new MongoClientURI(uri))) {
+            MongoCollection<RawBsonDocument> collection = client.getDatabase(db).getCollection(collectionName, RawBsonDocument.class);
+            if ("export".equals(args[0])) {
+                BsonDocument filter = options.containsKey("filter") ? BsonDocument.parse(options.get("filter")) : new BsonDocument();
+                try (DocumentSink sink = new FileDocumentSink(file, format, config.getBufferSize())) {
+                    progress = new DataExporter(config).export(collection, filter, sink);
+                }
+            } else {
+                try (DocumentSource source = new FileDocumentSource(file, format, config.getBufferSize())) {
+                    progress = new DataImporter(config).importTo(source, BulkTarget.of(collection));
+                }
+            }
+        }
+        System.out.println(progress);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                System.err.println("无效的参数 : " + args[i]);
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static String required(Map<String, String> options, String name) {
+        String value = options.get(name);
+        if (value == null) {
+            System.err.println("缺少参数 --" + name);
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        return value;
+    }
+}
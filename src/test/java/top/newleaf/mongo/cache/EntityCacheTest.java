@@ -0,0 +1,61 @@
+package top.newleaf.mongo.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 容量、存活时间和失效
+ *
+ * @author chengshx
+ */
+public class EntityCacheTest {
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        // 32个条目分为16段，每段2个，16的倍数落在同一段
+        EntityCache<Integer, String> cache = new EntityCache<>(32, 1, TimeUnit.HOURS);
+        cache.put(0, "a");
+        cache.put(16, "b");
+        assertEquals("a", cache.get(0));
+        cache.put(32, "c");
+        assertNull(cache.get(16));
+        assertEquals("a", cache.get(0));
+        assertEquals("c", cache.get(32));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void expireAfterTtl() throws InterruptedException {
+        EntityCache<String, String> cache = new EntityCache<>(10, 20, TimeUnit.MILLISECONDS);
+        cache.put("k", "v");
+        assertEquals("v", cache.get("k"));
+        Thread.sleep(50);
+        assertNull(cache.get("k"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void skipPutAfterInvalidation() {
+        EntityCache<String, String> cache = new EntityCache<>(10, 1, TimeUnit.HOURS);
+        long stamp = cache.stamp();
+        cache.invalidate("k");
+        assertFalse(cache.put("k", "stale", stamp));
+        assertNull(cache.get("k"));
+        assertTrue(cache.put("k", "v", cache.stamp()));
+        assertEquals("v", cache.get("k"));
+        cache.clear();
+        assertNull(cache.get("k"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSize() {
+        new EntityCache<>(0, 1, TimeUnit.SECONDS);
+    }
+}
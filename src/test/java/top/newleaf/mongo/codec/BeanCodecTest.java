@@ -0,0 +1,158 @@
+package top.newleaf.mongo.codec;
+
+import org.bson.*;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.junit.Test;
+
+import javax.persistence.Column;
+import javax.persistence.Transient;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 实体与bson直接互转，基本类型字段不装箱
+ *
+ * @author chengshx
+ */
+public class BeanCodecTest {
+
+    public static class Child {
+        private String name;
+        private int age;
+    }
+
+    public static class Entity {
+        private int count;
+        private long total;
+        private double score;
+        private boolean active;
+        private Integer boxedCount;
+        private Long boxedTotal;
+        private Date createTime;
+        private String title;
+        @Column(name = "alias")
+        private String renamed;
+        @Transient
+        private String ignored;
+        private Child child;
+        private List<Child> children;
+        private List<String> tags;
+        private byte[] data;
+    }
+
+    private final BeanCodec<Entity> codec = new BeanCodec<Entity>() {
+    };
+
+    private static Entity entity() {
+        Entity entity = new Entity();
+        entity.count = 7;
+        entity.total = 123456789012L;
+        entity.score = 1.5;
+        entity.active = true;
+        entity.boxedCount = 8;
+        entity.createTime = new Date(1000);
+        entity.title = "title";
+        entity.renamed = "alias";
+        entity.ignored = "ignored";
+        entity.child = new Child();
+        entity.child.name = "c1";
+        entity.child.age = 3;
+        entity.children = Arrays.asList(entity.child, null);
+        entity.tags = Arrays.asList("x", "y");
+        entity.data = new byte[]{1, 2, 3};
+        return entity;
+    }
+
+    private BsonDocument encode(Entity entity) {
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), entity, EncoderContext.builder().build());
+        return document;
+    }
+
+    private RawBsonDocument raw(Entity entity) {
+        return new RawBsonDocument(entity, codec);
+    }
+
+    private static RawBsonDocument raw(BsonDocument document) {
+        return new RawBsonDocument(document, new BsonDocumentCodec());
+    }
+
+    @Test
+    public void encodeColumns() {
+        BsonDocument document = encode(entity());
+        assertEquals(new BsonInt32(7), document.get("count"));
+        assertEquals(new BsonInt64(123456789012L), document.get("total"));
+        assertEquals(new BsonDouble(1.5), document.get("score"));
+        assertEquals(BsonBoolean.TRUE, document.get("active"));
+        assertEquals(new BsonInt32(8), document.get("boxed_count"));
+        assertEquals(BsonNull.VALUE, document.get("boxed_total"));
+        assertEquals(new BsonDateTime(1000), document.get("create_time"));
+        assertEquals(new BsonString("alias"), document.get("alias"));
+        assertFalse(document.containsKey("renamed"));
+        assertFalse(document.containsKey("ignored"));
+        assertEquals(BsonDocument.parse("{name: 'c1', age: 3}"), document.get("child"));
+        assertEquals(2, document.getArray("children").size());
+        assertTrue(document.getArray("children").get(1).isNull());
+        assertEquals(new BsonBinary(new byte[]{1, 2, 3}), document.get("data"));
+    }
+
+    @Test
+    public void roundTrip() {
+        Entity decoded = raw(entity()).decode(codec);
+        assertEquals(7, decoded.count);
+        assertEquals(123456789012L, decoded.total);
+        assertEquals(1.5, decoded.score, 0);
+        assertTrue(decoded.active);
+        assertEquals(Integer.valueOf(8), decoded.boxedCount);
+        assertNull(decoded.boxedTotal);
+        assertEquals(new Date(1000), decoded.createTime);
+        assertEquals("title", decoded.title);
+        assertEquals("alias", decoded.renamed);
+        assertNull(decoded.ignored);
+        assertEquals("c1", decoded.child.name);
+        assertEquals(3, decoded.child.age);
+        assertEquals("c1", decoded.children.get(0).name);
+        assertNull(decoded.children.get(1));
+        assertEquals(Arrays.asList("x", "y"), decoded.tags);
+        assertArrayEquals(new byte[]{1, 2, 3}, decoded.data);
+    }
+
+    @Test
+    public void rawDocumentMatchesDocumentWriter() {
+        Entity entity = entity();
+        RawBsonDocument raw = codec.toRawDocument(entity);
+        assertEquals(raw(encode(entity)), raw);
+        assertEquals(raw(entity), raw);
+    }
+
+    @Test
+    public void skipUnknownColumns() {
+        BsonDocument document = BsonDocument.parse("{unknown: {a: [1, {b: 2}]}, title: 'x', other: [1, 2]}");
+        Entity decoded = raw(document).decode(codec);
+        assertEquals("x", decoded.title);
+        assertEquals(0, decoded.count);
+    }
+
+    @Test
+    public void convertNumericTypes() {
+        BsonDocument document = BsonDocument.parse("{count: {$numberLong: '5'}, total: 6, score: 2, boxed_total: 7.0}");
+        Entity decoded = codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+        assertEquals(5, decoded.count);
+        assertEquals(6L, decoded.total);
+        assertEquals(2.0, decoded.score, 0);
+        assertEquals(Long.valueOf(7), decoded.boxedTotal);
+    }
+
+    @Test
+    public void nullPrimitiveKeepsDefault() {
+        BsonDocument document = BsonDocument.parse("{count: null, active: null}");
+        Entity decoded = codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+        assertEquals(0, decoded.count);
+        assertFalse(decoded.active);
+    }
+}
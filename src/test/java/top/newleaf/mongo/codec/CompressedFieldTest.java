@@ -0,0 +1,156 @@
+package top.newleaf.mongo.codec;
+
+import com.mongodb.MongoClient;
+import org.bson.*;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * 大字段压缩
+ *
+ * @author chengshx
+ */
+public class CompressedFieldTest {
+
+    public static class Entity {
+        @Compressed
+        private String body;
+        @Compressed(threshold = 10)
+        private byte[] blob;
+        @Compressed
+        private Lazy<String> lazyBody;
+        @Compressed
+        private String small;
+    }
+
+    public static class Invalid {
+        @Compressed
+        private int count;
+    }
+
+    private final BeanCodec<Entity> codec = new BeanCodec<>(Entity.class, MongoClient.getDefaultCodecRegistry());
+
+    private static String text(int repeat) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < repeat; i++) {
+            builder.append("hello world ").append(i % 7);
+        }
+        return builder.toString();
+    }
+
+    private static Entity entity() {
+        Entity entity = new Entity();
+        entity.body = text(500);
+        entity.blob = new byte[3000];
+        entity.lazyBody = Lazy.of(text(200));
+        entity.small = "tiny";
+        return entity;
+    }
+
+    @Test
+    public void compressAboveThreshold() {
+        RawBsonDocument raw = codec.toRawDocument(entity());
+        assertEquals(FieldCompression.SUB_TYPE, raw.getBinary("body").getType());
+        assertEquals(FieldCompression.SUB_TYPE, raw.getBinary("blob").getType());
+        assertEquals(FieldCompression.SUB_TYPE, raw.getBinary("lazy_body").getType());
+        assertEquals(new BsonString("tiny"), raw.get("small"));
+        assertTrue(raw.getByteBuffer().remaining() < 1000);
+    }
+
+    @Test
+    public void roundTrip() {
+        Entity decoded = codec.toRawDocument(entity()).decode(codec);
+        assertEquals(text(500), decoded.body);
+        assertArrayEquals(new byte[3000], decoded.blob);
+        assertEquals("tiny", decoded.small);
+        assertFalse(decoded.lazyBody.isLoaded());
+        assertEquals(text(200), decoded.lazyBody.get());
+    }
+
+    @Test
+    public void unloadedLazyValueIsCopied() {
+        RawBsonDocument raw = codec.toRawDocument(entity());
+        assertEquals(raw, codec.toRawDocument(raw.decode(codec)));
+    }
+
+    @Test
+    public void binaryWriterMatchesDocumentWriter() {
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), entity(), EncoderContext.builder().build());
+        assertEquals(new RawBsonDocument(document, new BsonDocumentCodec()), codec.toRawDocument(entity()));
+    }
+
+    @Test
+    public void incompressibleValueIsStoredAsIs() {
+        Entity entity = new Entity();
+        byte[] random = new byte[100];
+        new java.util.Random(1).nextBytes(random);
+        entity.blob = random;
+        RawBsonDocument raw = codec.toRawDocument(entity);
+        assertEquals(BsonBinarySubType.BINARY.getValue(), raw.getBinary("blob").getType());
+        assertArrayEquals(random, raw.decode(codec).blob);
+    }
+
+    @Test
+    public void decodeUncompressedValues() {
+        BsonDocument legacy = new BsonDocument("body", new BsonString("plain"))
+                .append("blob", new BsonBinary(new byte[]{1, 2}))
+                .append("lazy_body", new BsonString("lazy"));
+        Entity decoded = codec.decode(new BsonDocumentReader(legacy), DecoderContext.builder().build());
+        assertEquals("plain", decoded.body);
+        assertArrayEquals(new byte[]{1, 2}, decoded.blob);
+        assertEquals("lazy", decoded.lazyBody.get());
+    }
+
+    @Test
+    public void deflateRoundTrip() {
+        DeflateCompressor compressor = new DeflateCompressor(9);
+        byte[] data = text(100).getBytes();
+        byte[] compressed = compressor.compress(data);
+        assertTrue(compressed.length < data.length);
+        byte[] padded = new byte[compressed.length + 3];
+        System.arraycopy(compressed, 0, padded, 3, compressed.length);
+        assertTrue(Arrays.equals(data, compressor.decompress(padded, 3, compressed.length, data.length)));
+    }
+
+    /**
+     * 用指定的头部原始长度包装body的压缩数据
+     */
+    private Entity decodeBody(byte[] compressed, int originalLength) {
+        byte[] bytes = new byte[compressed.length + 5];
+        bytes[0] = DeflateCompressor.ID;
+        bytes[1] = (byte) originalLength;
+        bytes[2] = (byte) (originalLength >> 8);
+        bytes[3] = (byte) (originalLength >> 16);
+        bytes[4] = (byte) (originalLength >> 24);
+        System.arraycopy(compressed, 0, bytes, 5, compressed.length);
+        BsonDocument document = new BsonDocument("body", new BsonBinary(FieldCompression.SUB_TYPE, bytes));
+        return codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+
+    @Test
+    public void rejectInvalidOriginalLength() {
+        byte[] data = text(100).getBytes();
+        byte[] compressed = new DeflateCompressor().compress(data);
+        assertEquals(text(100), decodeBody(compressed, data.length).body);
+        for (int length : new int[]{-1, Integer.MAX_VALUE, compressed.length * FieldCompression.MAX_RATIO + 1, data.length + 1, data.length - 1}) {
+            try {
+                decodeBody(compressed, length);
+                fail("length = " + length);
+            } catch (IllegalArgumentException e) {
+                // 头部长度为负、超过上限或与解压结果不一致
+            }
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void unsupportedType() {
+        new BeanCodec<>(Invalid.class, MongoClient.getDefaultCodecRegistry()).toRawDocument(new Invalid());
+    }
+}
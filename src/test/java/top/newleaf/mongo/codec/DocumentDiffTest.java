@@ -0,0 +1,82 @@
+package top.newleaf.mongo.codec;
+
+import com.mongodb.MongoClient;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.junit.Test;
+
+import javax.persistence.Id;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 快照比较生成的更新
+ *
+ * @author chengshx
+ */
+public class DocumentDiffTest {
+
+    public static class Child {
+        private String name;
+        private int age;
+    }
+
+    public static class Entity extends TrackableEntity {
+        @Id
+        private String id;
+        private String title;
+        private Integer count;
+        private Child child;
+        private List<String> tags;
+    }
+
+    @Test
+    public void diffColumns() {
+        BsonDocument before = BsonDocument.parse("{_id: 1, a: 1, b: 'x', c: {d: 1, e: 2}, f: [1, 2], g: 1}");
+        BsonDocument after = BsonDocument.parse("{_id: 2, a: 1, b: 'y', c: {d: 1, e: 3, h: 4}, f: [1, 3], i: true}");
+        BsonDocument expected = BsonDocument.parse("{$set: {b: 'y', 'c.e': 3, 'c.h': 4, f: [1, 3], i: true}, $unset: {g: 1}}");
+        assertEquals(expected, DocumentDiff.diff(before, after));
+    }
+
+    @Test
+    public void noChange() {
+        BsonDocument document = BsonDocument.parse("{_id: 1, a: {b: [1]}}");
+        assertTrue(DocumentDiff.diff(document, document.clone()).isEmpty());
+    }
+
+    @Test
+    public void documentReplacedByScalar() {
+        BsonDocument before = BsonDocument.parse("{a: {b: 1}}");
+        BsonDocument after = BsonDocument.parse("{a: null}");
+        assertEquals(BsonDocument.parse("{$set: {a: null}}"), DocumentDiff.diff(before, after));
+    }
+
+    @Test
+    public void trackedEntityUpdate() {
+        BeanCodec<Entity> codec = new BeanCodec<>(Entity.class, MongoClient.getDefaultCodecRegistry());
+        Entity entity = new Entity();
+        entity.id = "e1";
+        entity.title = "title";
+        entity.count = 1;
+        entity.child = new Child();
+        entity.child.name = "c1";
+        entity.tags = Arrays.asList("x");
+        Entity decoded = new RawBsonDocument(entity, codec).decode(codec);
+        assertNotNull(decoded.getSnapshot());
+        assertTrue(codec.getUpdate(decoded).isEmpty());
+        decoded.title = "new";
+        decoded.count = null;
+        decoded.child.age = 5;
+        decoded.tags = Arrays.asList("x", "y");
+        BsonDocument expected = BsonDocument.parse("{$set: {title: 'new', count: null, 'child.age': 5, tags: ['x', 'y']}}");
+        assertEquals(expected, codec.getUpdate(decoded));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void untrackedEntity() {
+        BeanCodec<Entity> codec = new BeanCodec<>(Entity.class, MongoClient.getDefaultCodecRegistry());
+        codec.getUpdate(new Entity());
+    }
+}
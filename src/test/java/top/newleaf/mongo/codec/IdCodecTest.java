@@ -0,0 +1,99 @@
+package top.newleaf.mongo.codec;
+
+import com.mongodb.MongoClient;
+import org.bson.*;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import javax.persistence.Id;
+
+import static org.junit.Assert.*;
+
+/**
+ * _id的转换和客户端生成
+ *
+ * @author chengshx
+ */
+public class IdCodecTest {
+
+    public static class StringIdEntity {
+        @Id
+        private String id;
+        private String name;
+    }
+
+    public static class ObjectIdEntity {
+        @Id
+        private ObjectId id;
+    }
+
+    public static class BytesIdEntity {
+        @Id
+        private byte[] id;
+    }
+
+    public static class LongIdEntity {
+        @Id
+        private long id;
+    }
+
+    private static <T> BeanCodec<T> codec(Class<T> clazz) {
+        return new BeanCodec<>(clazz, MongoClient.getDefaultCodecRegistry());
+    }
+
+    @Test
+    public void hexStringIdIsStoredAsObjectId() {
+        BeanCodec<StringIdEntity> codec = codec(StringIdEntity.class);
+        StringIdEntity entity = new StringIdEntity();
+        entity.id = new ObjectId().toHexString();
+        RawBsonDocument raw = new RawBsonDocument(entity, codec);
+        assertEquals(new BsonObjectId(new ObjectId(entity.id)), raw.get("_id"));
+        assertEquals(entity.id, raw.decode(codec).id);
+        assertEquals(raw.get("_id"), codec.getDocumentId(entity));
+    }
+
+    @Test
+    public void otherStringIdIsStoredAsString() {
+        BeanCodec<StringIdEntity> codec = codec(StringIdEntity.class);
+        StringIdEntity entity = new StringIdEntity();
+        entity.id = "user-1";
+        RawBsonDocument raw = new RawBsonDocument(entity, codec);
+        assertEquals(new BsonString("user-1"), raw.get("_id"));
+        assertEquals("user-1", raw.decode(codec).id);
+        assertEquals(new BsonString("user-1"), codec.toIdValue("user-1"));
+    }
+
+    @Test
+    public void nullIdIsOmitted() {
+        BeanCodec<StringIdEntity> codec = codec(StringIdEntity.class);
+        StringIdEntity entity = new StringIdEntity();
+        assertFalse(new RawBsonDocument(entity, codec).containsKey("_id"));
+        assertFalse(codec.documentHasId(entity));
+    }
+
+    @Test
+    public void generateIds() {
+        StringIdEntity stringEntity = codec(StringIdEntity.class).generateIdIfAbsentFromDocument(new StringIdEntity());
+        assertTrue(ObjectId.isValid(stringEntity.id));
+        assertNotNull(codec(ObjectIdEntity.class).generateIdIfAbsentFromDocument(new ObjectIdEntity()).id);
+        BytesIdEntity bytesEntity = codec(BytesIdEntity.class).generateIdIfAbsentFromDocument(new BytesIdEntity());
+        assertEquals(12, bytesEntity.id.length);
+        BeanCodec<BytesIdEntity> bytesCodec = codec(BytesIdEntity.class);
+        RawBsonDocument raw = new RawBsonDocument(bytesEntity, bytesCodec);
+        assertTrue(raw.get("_id").isObjectId());
+        assertArrayEquals(bytesEntity.id, raw.decode(bytesCodec).id);
+        // 已有id不会被替换
+        String id = stringEntity.id;
+        assertEquals(id, codec(StringIdEntity.class).generateIdIfAbsentFromDocument(stringEntity).id);
+    }
+
+    @Test
+    public void primitiveIdIsAlwaysPresent() {
+        BeanCodec<LongIdEntity> codec = codec(LongIdEntity.class);
+        LongIdEntity entity = new LongIdEntity();
+        entity.id = 42;
+        assertTrue(codec.documentHasId(entity));
+        assertEquals(new BsonInt64(42), codec.getDocumentId(entity));
+        assertEquals(42, new RawBsonDocument(entity, codec).decode(codec).id);
+    }
+}
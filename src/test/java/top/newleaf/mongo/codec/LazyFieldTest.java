@@ -0,0 +1,118 @@
+package top.newleaf.mongo.codec;
+
+import com.mongodb.MongoClient;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Lazy字段的编解码
+ *
+ * @author chengshx
+ */
+public class LazyFieldTest {
+
+    public static class Child {
+        private String name;
+        private int age;
+    }
+
+    public static class Entity {
+        private Lazy<Integer> count;
+        private Lazy<Long> total;
+        private Lazy<Double> score;
+        private Lazy<Boolean> active;
+        private Lazy<Date> createTime;
+        private Lazy<String> title;
+        private Lazy<Child> child;
+        private Lazy<List<Child>> children;
+        private Lazy<Integer> empty;
+    }
+
+    private final BeanCodec<Entity> codec = new BeanCodec<>(Entity.class, MongoClient.getDefaultCodecRegistry());
+
+    private static Child child(String name, int age) {
+        Child child = new Child();
+        child.name = name;
+        child.age = age;
+        return child;
+    }
+
+    private static Entity entity() {
+        Entity entity = new Entity();
+        entity.count = Lazy.of(7);
+        entity.total = Lazy.of(123456789012L);
+        entity.score = Lazy.of(1.5);
+        entity.active = Lazy.of(true);
+        entity.createTime = Lazy.of(new Date(1000));
+        entity.title = Lazy.of("title");
+        entity.child = Lazy.of(child("c1", 3));
+        entity.children = Lazy.of(Arrays.asList(child("c2", 4), null));
+        entity.empty = Lazy.of(null);
+        return entity;
+    }
+
+    private RawBsonDocument raw(Entity entity) {
+        return new RawBsonDocument(entity, codec);
+    }
+
+    @Test
+    public void encodeScalarsWithBinaryWriter() {
+        RawBsonDocument raw = codec.toRawDocument(entity());
+        assertEquals(7, raw.getInt32("count").getValue());
+        assertEquals(123456789012L, raw.getInt64("total").getValue());
+        assertEquals(1.5, raw.getDouble("score").getValue(), 0);
+        assertTrue(raw.getBoolean("active").getValue());
+        assertEquals(1000, raw.getDateTime("create_time").getValue());
+        assertEquals("title", raw.getString("title").getValue());
+        assertTrue(raw.get("empty").isNull());
+    }
+
+    @Test
+    public void binaryWriterMatchesDocumentWriter() {
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), entity(), EncoderContext.builder().build());
+        assertEquals(new RawBsonDocument(document, new BsonDocumentCodec()), codec.toRawDocument(entity()));
+    }
+
+    @Test
+    public void decodeOnFirstAccess() {
+        Entity decoded = raw(entity()).decode(codec);
+        assertFalse(decoded.count.isLoaded());
+        assertFalse(decoded.child.isLoaded());
+        assertFalse(decoded.children.isLoaded());
+        assertEquals(Integer.valueOf(7), decoded.count.get());
+        assertTrue(decoded.count.isLoaded());
+        assertEquals(Long.valueOf(123456789012L), decoded.total.get());
+        assertEquals(Double.valueOf(1.5), decoded.score.get());
+        assertEquals(Boolean.TRUE, decoded.active.get());
+        assertEquals(new Date(1000), decoded.createTime.get());
+        assertEquals("title", decoded.title.get());
+        assertEquals("c1", decoded.child.get().name);
+        assertTrue(decoded.child.isLoaded());
+        assertEquals(3, decoded.child.get().age);
+        assertEquals(2, decoded.children.get().size());
+        assertEquals("c2", decoded.children.get().get(0).name);
+        assertNull(decoded.children.get().get(1));
+    }
+
+    @Test
+    public void unloadedValuesAreCopied() {
+        RawBsonDocument raw = raw(entity());
+        Entity decoded = raw.decode(codec);
+        assertEquals(raw, raw(decoded));
+        decoded.child.set(child("c3", 5));
+        assertEquals("c3", raw(decoded).getDocument("child").getString("name").getValue());
+        decoded.count.set(8);
+        assertEquals(8, codec.toRawDocument(decoded).getInt32("count").getValue());
+    }
+}
@@ -0,0 +1,116 @@
+package top.newleaf.mongo.codec;
+
+import com.mongodb.MongoClient;
+import org.bson.*;
+import org.bson.codecs.DecoderContext;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 数值数组的二进制存储
+ *
+ * @author chengshx
+ */
+public class PackedArraysTest {
+
+    public static class Entity {
+        @Packed
+        private long[] times;
+        @Packed
+        private double[] values;
+        @Packed
+        private List<Integer> ids;
+        @Packed
+        private float[] weights;
+        private long[] plain;
+        private List<Long> plainList;
+    }
+
+    public static class Unpacked {
+        private long[] times;
+        private double[] values;
+        private List<Integer> ids;
+    }
+
+    public static class Invalid {
+        @Packed
+        private String[] names;
+    }
+
+    private final BeanCodec<Entity> codec = new BeanCodec<>(Entity.class, MongoClient.getDefaultCodecRegistry());
+
+    private static Entity entity() {
+        Entity entity = new Entity();
+        entity.times = new long[]{1, 2, Long.MAX_VALUE};
+        entity.values = new double[]{0.5, -1};
+        entity.ids = Arrays.asList(7, 8, 9);
+        entity.weights = new float[]{1.5f};
+        entity.plain = new long[]{3, 4};
+        entity.plainList = Arrays.asList(1L, null, 3L);
+        return entity;
+    }
+
+    @Test
+    public void packedAsLittleEndianBinary() {
+        RawBsonDocument raw = codec.toRawDocument(entity());
+        BsonBinary times = raw.getBinary("times");
+        assertEquals((byte) 0x81, times.getType());
+        assertEquals(24, times.getData().length);
+        assertEquals(2, times.getData()[8]);
+        assertEquals((byte) 0x82, raw.getBinary("values").getType());
+        assertEquals((byte) 0x80, raw.getBinary("ids").getType());
+        assertEquals((byte) 0x83, raw.getBinary("weights").getType());
+        assertTrue(raw.get("plain").isArray());
+        assertTrue(raw.get("plain_list").isArray());
+    }
+
+    @Test
+    public void roundTrip() {
+        Entity decoded = codec.toRawDocument(entity()).decode(codec);
+        assertArrayEquals(new long[]{1, 2, Long.MAX_VALUE}, decoded.times);
+        assertArrayEquals(new double[]{0.5, -1}, decoded.values, 0);
+        assertEquals(Arrays.asList(7, 8, 9), decoded.ids);
+        assertArrayEquals(new float[]{1.5f}, decoded.weights, 0);
+        assertArrayEquals(new long[]{3, 4}, decoded.plain);
+        assertEquals(Arrays.asList(1L, null, 3L), decoded.plainList);
+    }
+
+    @Test
+    public void emptyArrays() {
+        Entity entity = new Entity();
+        entity.times = new long[0];
+        entity.ids = Arrays.asList();
+        Entity decoded = codec.toRawDocument(entity).decode(codec);
+        assertEquals(0, decoded.times.length);
+        assertTrue(decoded.ids.isEmpty());
+        assertNull(decoded.values);
+    }
+
+    @Test
+    public void decodeLegacyArrays() {
+        BsonDocument legacy = BsonDocument.parse("{times: [1, 2.0, {$numberLong: '5'}], values: [1, 2], ids: [3, 4], weights: [1, 2]}");
+        Entity decoded = codec.decode(new BsonDocumentReader(legacy), DecoderContext.builder().build());
+        assertArrayEquals(new long[]{1, 2, 5}, decoded.times);
+        assertArrayEquals(new double[]{1, 2}, decoded.values, 0);
+        assertEquals(Arrays.asList(3, 4), decoded.ids);
+        assertArrayEquals(new float[]{1, 2}, decoded.weights, 0);
+    }
+
+    @Test
+    public void decodePackedIntoUnannotatedFields() {
+        BeanCodec<Unpacked> unpacked = new BeanCodec<>(Unpacked.class, MongoClient.getDefaultCodecRegistry());
+        Unpacked decoded = codec.toRawDocument(entity()).decode(unpacked);
+        assertArrayEquals(new long[]{1, 2, Long.MAX_VALUE}, decoded.times);
+        assertArrayEquals(new double[]{0.5, -1}, decoded.values, 0);
+        assertEquals(Arrays.asList(7, 8, 9), decoded.ids);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void unsupportedType() {
+        new BeanCodec<>(Invalid.class, MongoClient.getDefaultCodecRegistry()).toRawDocument(new Invalid());
+    }
+}
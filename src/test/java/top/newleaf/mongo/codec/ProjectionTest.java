@@ -0,0 +1,60 @@
+package top.newleaf.mongo.codec;
+
+import com.mongodb.MongoClient;
+import org.bson.RawBsonDocument;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * 只解码部分字段
+ *
+ * @author chengshx
+ */
+public class ProjectionTest {
+
+    public static class Child {
+        private String name;
+    }
+
+    public static class Entity {
+        private String title;
+        private int count;
+        private Child child;
+    }
+
+    private final BeanCodec<Entity> codec = new BeanCodec<>(Entity.class, MongoClient.getDefaultCodecRegistry());
+
+    @Test
+    public void decodeOnlyProjectedFields() {
+        Entity entity = new Entity();
+        entity.title = "title";
+        entity.count = 3;
+        entity.child = new Child();
+        entity.child.name = "c1";
+        RawBsonDocument raw = new RawBsonDocument(entity, codec);
+        // 字段名和列名都可使用
+        Entity decoded = raw.decode(codec.withProjection(Arrays.asList("title", "count")));
+        assertEquals("title", decoded.title);
+        assertEquals(3, decoded.count);
+        assertNull(decoded.child);
+        decoded = raw.decode(codec.withProjection(Collections.singletonList("child")));
+        assertNull(decoded.title);
+        assertEquals("c1", decoded.child.name);
+    }
+
+    @Test
+    public void encodeIsNotProjected() {
+        Entity entity = new Entity();
+        entity.title = "title";
+        assertEquals(new RawBsonDocument(entity, codec), new RawBsonDocument(entity, codec.withProjection(Collections.singletonList("count"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownField() {
+        codec.withProjection(Collections.singletonList("missing"));
+    }
+}
@@ -0,0 +1,224 @@
+package top.newleaf.mongo.factory;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoNamespace;
+import com.mongodb.async.SingleResultCallback;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import org.bson.*;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import top.newleaf.mongo.bulk.WriteBehindConfig;
+import top.newleaf.mongo.cache.Cached;
+import top.newleaf.mongo.cache.EntityCache;
+import top.newleaf.mongo.metrics.CacheStats;
+import top.newleaf.mongo.metrics.MongoMetrics;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * 绕过CachedCollection的写操作使缓存失效
+ *
+ * @author chengshx
+ */
+public class CacheInvalidationTest {
+
+    @Table(name = "cached_entity")
+    @Cached
+    public static class Entity {
+        @Id
+        private ObjectId id;
+        private String name;
+    }
+
+    private static final RawBsonDocument STALE = RawBsonDocument.parse("{name: 'stale'}");
+
+    private MongoDB db;
+    private EntityCache<BsonValue, RawBsonDocument> cache;
+
+    /**
+     * 写操作直接返回null的集合
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> MongoCollection<T> collection(Class<T> clazz) {
+        return (MongoCollection<T>) Proxy.newProxyInstance(CacheInvalidationTest.class.getClassLoader(), new Class[]{MongoCollection.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getCodecRegistry":
+                    return MongoClient.getDefaultCodecRegistry();
+                case "getNamespace":
+                    return new MongoNamespace("test.cached_entity");
+                case "withDocumentClass":
+                    return collection((Class<?>) args[0]);
+                case "insertMany":
+                case "replaceOne":
+                case "bulkWrite":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * 写操作立即以null结果回调的异步集合
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> com.mongodb.async.client.MongoCollection<T> asyncCollection() {
+        return (com.mongodb.async.client.MongoCollection<T>) Proxy.newProxyInstance(CacheInvalidationTest.class.getClassLoader(),
+                new Class[]{com.mongodb.async.client.MongoCollection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getCodecRegistry":
+                            return MongoClient.getDefaultCodecRegistry();
+                        case "insertOne":
+                        case "replaceOne":
+                        case "updateOne":
+                        case "deleteOne":
+                        case "bulkWrite":
+                            ((SingleResultCallback<Object>) args[args.length - 1]).onResult(null, null);
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private AsyncMongoDB async() {
+        com.mongodb.async.client.MongoDatabase database = (com.mongodb.async.client.MongoDatabase) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{com.mongodb.async.client.MongoDatabase.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getCodecRegistry":
+                            return MongoClient.getDefaultCodecRegistry();
+                        case "getCollection":
+                            return asyncCollection();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return new AsyncMongoDB(db, database);
+    }
+
+    @Before
+    public void setUp() {
+        MongoDatabase database = (MongoDatabase) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{MongoDatabase.class}, (proxy, method, args) -> {
+            if ("getCollection".equals(method.getName())) {
+                return collection((Class<?>) args[1]);
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+        MongoMetrics.setEnabled(true);
+        MongoMetrics.setJmx(false);
+        db = new MongoDB("test", database);
+        cache = db.cached(Entity.class).getCache();
+    }
+
+    @After
+    public void tearDown() {
+        db.closeWriteBehinds();
+        MongoMetrics.reset();
+        MongoMetrics.setEnabled(false);
+        MongoMetrics.setJmx(true);
+    }
+
+    private static Entity entity() {
+        Entity entity = new Entity();
+        entity.id = new ObjectId();
+        entity.name = "new";
+        return entity;
+    }
+
+    private BsonValue cacheStale(Entity entity) {
+        BsonValue key = new BsonObjectId(entity.id);
+        cache.put(key, STALE);
+        assertNotNull(cache.get(key));
+        return key;
+    }
+
+    @Test
+    public void save() {
+        Entity entity = entity();
+        BsonValue key = cacheStale(entity);
+        db.save(entity);
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void bulkInsert() {
+        Entity entity = entity();
+        BsonValue key = cacheStale(entity);
+        db.bulkInsert(Entity.class, Arrays.asList(entity, entity()), false);
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void writeBehind() {
+        Entity entity = entity();
+        BsonValue key = cacheStale(entity);
+        Entity other = entity();
+        BsonValue otherKey = cacheStale(other);
+        WriteBehindCollection<Entity> writeBehind = db.writeBehind(Entity.class, new WriteBehindConfig(), null);
+        writeBehind.replace(entity);
+        writeBehind.flush();
+        assertNull(cache.get(key));
+        assertNotNull(cache.get(otherKey));
+        // 任意条件的更新无法确定id，清空缓存
+        writeBehind.write(new UpdateOneModel<>(new BsonDocument("name", new BsonString("x")), new BsonDocument("$set", new BsonDocument())));
+        writeBehind.flush();
+        assertNull(cache.get(otherKey));
+    }
+
+    @Test
+    public void invalidateHook() {
+        Entity entity = entity();
+        BsonValue key = cacheStale(entity);
+        db.invalidateCache(Entity.class, entity.id);
+        assertNull(cache.get(key));
+        cacheStale(entity);
+        db.clearCache(Entity.class);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void registerStats() {
+        CacheStats stats = MongoMetrics.getCacheStats().get("test:" + Entity.class.getName());
+        assertNotNull(stats);
+        cache.put(new BsonInt32(1), STALE);
+        cache.get(new BsonInt32(1));
+        cache.get(new BsonInt32(2));
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getSize());
+        assertEquals(0.5, stats.getHitRatio(), 0);
+    }
+
+    @Test
+    public void asyncWrites() {
+        AsyncMongoDB async = async();
+        Entity entity = entity();
+        BsonValue key = cacheStale(entity);
+        async.insert(entity).join();
+        assertNull(cache.get(key));
+        cacheStale(entity);
+        async.replace(entity, false).join();
+        assertNull(cache.get(key));
+        cacheStale(entity);
+        async.update(Entity.class, entity.id, new BsonDocument("$set", new BsonDocument("name", new BsonString("x")))).join();
+        assertNull(cache.get(key));
+        cacheStale(entity);
+        async.deleteById(Entity.class, entity.id).join();
+        assertNull(cache.get(key));
+        // 批量写入无法确定全部id，清空缓存
+        cacheStale(entity);
+        async.bulkWrite(Entity.class, Collections.singletonList(new InsertOneModel<>(entity())), true).join();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,42 @@
+package top.newleaf.mongo.factory;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 共用客户端的判断
+ *
+ * @author chengshx
+ */
+public class ClientKeyTest {
+
+    private static MongoClientURI key(String db, Integer maxPoolSize, Boolean socketKeepAlive) {
+        MongoConnection connection = new MongoConnection("mongodb://localhost:27017", db, db, false);
+        connection.setMaxPoolSize(maxPoolSize);
+        connection.setSocketKeepAlive(socketKeepAlive);
+        connection.setCompressors("zlib");
+        return MongoFactory.getInstance().getClientURI(connection, MongoClient.getDefaultCodecRegistry());
+    }
+
+    @Test
+    public void sameOptionsShareClient() {
+        MongoClientURI first = key("db1", 10, null);
+        assertEquals(first, key("db2", 10, null));
+        assertEquals(first.hashCode(), key("db2", 10, null).hashCode());
+        assertEquals(10, first.getOptions().getConnectionsPerHost());
+        assertEquals("zlib", first.getOptions().getCompressorList().get(0).getName());
+    }
+
+    @Test
+    public void differentOptions() {
+        assertNotEquals(key("db1", 10, null), key("db1", 20, null));
+    }
+
+    @Test
+    public void ignoreSocketKeepAlive() {
+        assertEquals(key("db1", 10, null), key("db1", 10, false));
+    }
+}
@@ -0,0 +1,86 @@
+package top.newleaf.mongo.factory;
+
+import com.mongodb.MongoClient;
+import org.bson.codecs.Codec;
+import org.junit.Test;
+import top.newleaf.mongo.codec.BeanCodec;
+import top.newleaf.mongo.codec.Generated;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 同一实体存在多个codec时的选择
+ *
+ * @author chengshx
+ */
+public class CodecPrecedenceTest {
+
+    public static class Entity {
+        private String name;
+    }
+
+    public static class Other {
+        private String name;
+    }
+
+    @Generated
+    public static class EntityGeneratedCodec extends BeanCodec<Entity> {
+        public EntityGeneratedCodec() {
+            super(Entity.class, MongoClient.getDefaultCodecRegistry());
+        }
+    }
+
+    public static class EntityCodec extends BeanCodec<Entity> {
+        public EntityCodec() {
+            super(Entity.class, MongoClient.getDefaultCodecRegistry());
+        }
+    }
+
+    @Generated
+    public static class OtherGeneratedCodec extends BeanCodec<Other> {
+        public OtherGeneratedCodec() {
+            super(Other.class, MongoClient.getDefaultCodecRegistry());
+        }
+    }
+
+    public static final class Registry {
+        public static List<Codec<?>> codecs() {
+            return Arrays.asList(new EntityGeneratedCodec(), new OtherGeneratedCodec());
+        }
+    }
+
+    @Test
+    public void handWrittenCodecWins() {
+        // 不同的集合顺序得到相同的结果
+        List<Codec<?>> codecs = Arrays.asList(new EntityGeneratedCodec(), new EntityCodec(), new OtherGeneratedCodec());
+        for (int i = 0; i < codecs.size(); i++) {
+            Collections.rotate(codecs, 1);
+            List<Codec<?>> selected = MongoFactory.selectCodecs(new LinkedHashSet<>(codecs));
+            assertEquals(2, selected.size());
+            Set<Class<?>> classes = new HashSet<>();
+            for (Codec<?> codec : selected) {
+                classes.add(codec.getClass());
+            }
+            assertEquals(new HashSet<>(Arrays.asList(EntityCodec.class, OtherGeneratedCodec.class)), classes);
+        }
+    }
+
+    @Test
+    public void loadRegistry() {
+        List<Codec<?>> registered = MongoFactory.loadRegistry(Registry.class.getName());
+        // 注册类与扫描同时提供同一codec类时只保留一个
+        List<Codec<?>> codecs = new ArrayList<>(registered);
+        codecs.add(new EntityGeneratedCodec());
+        codecs.add(new EntityCodec());
+        List<Codec<?>> selected = MongoFactory.selectCodecs(codecs);
+        assertEquals(2, selected.size());
+        assertEquals(EntityCodec.class, selected.get(0).getClass());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingRegistry() {
+        MongoFactory.loadRegistry("top.newleaf.test.MissingRegistry");
+    }
+}
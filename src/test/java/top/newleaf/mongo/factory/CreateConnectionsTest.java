@@ -0,0 +1,48 @@
+package top.newleaf.mongo.factory;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+/**
+ * 创建连接失败时的清理和启动索引的等待
+ *
+ * @author chengshx
+ */
+public class CreateConnectionsTest {
+
+    @After
+    public void tearDown() {
+        MongoFactory.getInstance().close();
+    }
+
+    @Test
+    public void resetAfterFailure() {
+        MongoFactory factory = MongoFactory.getInstance();
+        MongoConnection invalid = new MongoConnection("invalid://localhost", "test", "invalid", true);
+        try {
+            factory.createConnections(Collections.singletonList(invalid), Collections.emptySet());
+            fail();
+        } catch (IllegalArgumentException e) {
+            // uri无效
+        }
+        assertFalse(factory.getHasInit());
+        assertNull(factory.getIndexManager());
+        assertNull(MongoFactory.getDb());
+        assertTrue(MongoFactory.getDbs().isEmpty());
+    }
+
+    @Test
+    public void indexFailuresAreOnlyLogged() {
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("index"));
+        CompletableFuture<Void> cancelled = new CompletableFuture<>();
+        cancelled.cancel(false);
+        MongoFactory.awaitIndexes(Arrays.asList(failed, cancelled, CompletableFuture.completedFuture(null)));
+    }
+}
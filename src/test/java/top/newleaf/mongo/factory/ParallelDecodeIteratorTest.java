@@ -0,0 +1,105 @@
+package top.newleaf.mongo.factory;
+
+import com.mongodb.client.MongoCursor;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonReader;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Decoder;
+import org.bson.codecs.DecoderContext;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 并行解码的顺序和关闭
+ *
+ * @author chengshx
+ */
+public class ParallelDecodeIteratorTest {
+
+    private static final int COUNT = 1000;
+
+    private final AtomicInteger decoded = new AtomicInteger();
+    private final Decoder<Integer> decoder = new Decoder<Integer>() {
+        @Override
+        public Integer decode(BsonReader reader, DecoderContext decoderContext) {
+            decoded.incrementAndGet();
+            return new BsonDocumentCodec().decode(reader, decoderContext).getInt32("i").getValue();
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    private static MongoCursor<RawBsonDocument> cursor(int count) {
+        Iterator<RawBsonDocument> documents = new Iterator<RawBsonDocument>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < count;
+            }
+
+            @Override
+            public RawBsonDocument next() {
+                return new RawBsonDocument(new BsonDocument("i", new BsonInt32(i++)), new BsonDocumentCodec());
+            }
+        };
+        return (MongoCursor<RawBsonDocument>) Proxy.newProxyInstance(ParallelDecodeIteratorTest.class.getClassLoader(), new Class[]{MongoCursor.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hasNext":
+                    return documents.hasNext();
+                case "next":
+                    return documents.next();
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Test
+    public void orderedKeepsCursorOrder() {
+        Executor executor = Runnable::run;
+        ParallelDecodeIterator<Integer> iterator = new ParallelDecodeIterator<>(cursor(COUNT), decoder, executor, true, 4);
+        int expected = 0;
+        while (iterator.hasNext()) {
+            assertEquals(Integer.valueOf(expected++), iterator.next());
+        }
+        assertEquals(COUNT, expected);
+    }
+
+    @Test
+    public void closeCancelsQueuedChunks() {
+        for (boolean ordered : new boolean[]{true, false}) {
+            decoded.set(0);
+            // 只执行第一个解码任务，其余留在队列中
+            List<Runnable> queued = new ArrayList<>();
+            Executor executor = task -> {
+                if (decoded.get() == 0 && queued.isEmpty()) {
+                    task.run();
+                } else {
+                    queued.add(task);
+                }
+            };
+            ParallelDecodeIterator<Integer> iterator = new ParallelDecodeIterator<>(cursor(COUNT), decoder, executor, ordered, 4);
+            assertTrue(iterator.hasNext());
+            int first = decoded.get();
+            assertEquals(3, queued.size());
+            iterator.close();
+            for (Runnable task : queued) {
+                task.run();
+            }
+            assertEquals("ordered = " + ordered, first, decoded.get());
+            assertFalse(iterator.hasNext());
+        }
+    }
+}
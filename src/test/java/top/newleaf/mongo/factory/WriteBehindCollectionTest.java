@@ -0,0 +1,110 @@
+package top.newleaf.mongo.factory;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Test;
+import top.newleaf.mongo.bulk.WriteBehindConfig;
+
+import javax.persistence.Id;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 异步批量写入的快照
+ *
+ * @author chengshx
+ */
+public class WriteBehindCollectionTest {
+
+    public static class Entity {
+        @Id
+        private ObjectId id;
+        private String name;
+    }
+
+    private final List<List<WriteModel<RawBsonDocument>>> written = new ArrayList<>();
+    private final List<List<WriteModel<Entity>>> failed = new ArrayList<>();
+    private RuntimeException writeError;
+    private WriteBehindCollection<Entity> writeBehind;
+
+    /**
+     * 只记录bulkWrite参数的集合
+     */
+    @SuppressWarnings("unchecked")
+    private <T> MongoCollection<T> collection(Class<T> clazz) {
+        return (MongoCollection<T>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{MongoCollection.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getCodecRegistry":
+                    return MongoClient.getDefaultCodecRegistry();
+                case "getNamespace":
+                    return new MongoNamespace("test.entity");
+                case "withDocumentClass":
+                    return collection((Class<?>) args[0]);
+                case "bulkWrite":
+                    if (writeError != null) {
+                        throw writeError;
+                    }
+                    written.add(new ArrayList<>((List<WriteModel<RawBsonDocument>>) args[0]));
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private WriteBehindCollection<Entity> create() {
+        WriteBehindConfig config = new WriteBehindConfig();
+        config.setFlushInterval(60000);
+        config.setFlushOnShutdown(false);
+        writeBehind = new WriteBehindCollection<>(new MongoDB(), collection(Entity.class), Entity.class, config, (batch, e) -> failed.add(batch));
+        return writeBehind;
+    }
+
+    @After
+    public void close() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
+    @Test
+    public void snapshotOnEnqueue() {
+        WriteBehindCollection<Entity> collection = create();
+        Entity entity = new Entity();
+        entity.name = "before";
+        collection.insert(entity);
+        assertNotNull(entity.id);
+        entity.name = "after";
+        collection.replace(entity);
+        entity.name = "changed";
+        collection.deleteById(entity.id);
+        collection.flush();
+        assertEquals(1, written.size());
+        List<WriteModel<RawBsonDocument>> batch = written.get(0);
+        RawBsonDocument inserted = ((InsertOneModel<RawBsonDocument>) batch.get(0)).getDocument();
+        assertEquals("before", inserted.getString("name").getValue());
+        assertEquals(entity.id, inserted.getObjectId("_id").getValue());
+        assertEquals("after", ((ReplaceOneModel<RawBsonDocument>) batch.get(1)).getReplacement().getString("name").getValue());
+        assertTrue(batch.get(2) instanceof DeleteOneModel);
+    }
+
+    @Test
+    public void originalModelsOnError() {
+        WriteBehindCollection<Entity> collection = create();
+        writeError = new IllegalStateException("write");
+        Entity entity = new Entity();
+        collection.upsert(entity);
+        collection.flush();
+        assertEquals(1, failed.size());
+        assertSame(entity, ((ReplaceOneModel<Entity>) failed.get(0).get(0)).getReplacement());
+        assertTrue(((ReplaceOneModel<Entity>) failed.get(0).get(0)).getOptions().isUpsert());
+    }
+}
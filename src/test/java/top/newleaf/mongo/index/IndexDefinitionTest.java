@@ -0,0 +1,61 @@
+package top.newleaf.mongo.index;
+
+import org.bson.BsonDocument;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 注解索引与服务端索引的比较
+ *
+ * @author chengshx
+ */
+public class IndexDefinitionTest {
+
+    @CompoundIndex(fields = {"userId", "-createTime"}, unique = true)
+    public static class Entity {
+        @Indexed(sparse = true)
+        private String code;
+        @Indexed(expireAfterSeconds = 60)
+        private long expireTime;
+        private String userId;
+        private long createTime;
+    }
+
+    private static IndexDefinition definition(String keyPattern) {
+        for (IndexDefinition definition : IndexDefinition.of(Entity.class)) {
+            if (definition.getKeyPattern().equals(keyPattern)) {
+                return definition;
+            }
+        }
+        throw new AssertionError(keyPattern);
+    }
+
+    @Test
+    public void keyPatterns() {
+        assertNotNull(definition("code:1"));
+        assertNotNull(definition("expire_time:1"));
+        assertEquals("user_id:1,create_time:-1", IndexDefinition.getKeyPattern(BsonDocument.parse("{user_id: 1.0, create_time: -1}")));
+        assertNotNull(definition("user_id:1,create_time:-1"));
+    }
+
+    @Test
+    public void sameOptions() {
+        assertTrue(definition("code:1").compareOptions(BsonDocument.parse("{name: 'code_1', sparse: true}")).isEmpty());
+        assertTrue(definition("expire_time:1").compareOptions(BsonDocument.parse("{name: 'e', expireAfterSeconds: 60.0}")).isEmpty());
+        assertTrue(definition("user_id:1,create_time:-1").compareOptions(BsonDocument.parse("{name: 'u', unique: 1}")).isEmpty());
+    }
+
+    @Test
+    public void differentOptions() {
+        List<String> differences = definition("code:1").compareOptions(BsonDocument.parse("{name: 'code_1', unique: true}"));
+        assertEquals(2, differences.size());
+        assertTrue(differences.get(0).startsWith("unique"));
+        assertTrue(differences.get(1).startsWith("sparse"));
+        assertEquals(1, definition("expire_time:1").compareOptions(BsonDocument.parse("{name: 'e', expireAfterSeconds: 30}")).size());
+        assertEquals(1, definition("expire_time:1").compareOptions(BsonDocument.parse("{name: 'e'}")).size());
+        assertEquals(1, definition("user_id:1,create_time:-1").compareOptions(BsonDocument.parse("{name: 'u'}")).size());
+    }
+}
@@ -0,0 +1,68 @@
+package top.newleaf.mongo.read;
+
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import com.mongodb.TaggableReadPreference;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 实体与连接读取路由的合并
+ *
+ * @author chengshx
+ */
+public class ReadConfigTest {
+
+    private final ReadConfig connection = new ReadConfig("secondaryPreferred", 90L, "majority");
+
+    @ReadRouting(preference = "secondary")
+    public static class PreferenceOnly {
+    }
+
+    @ReadRouting(maxStaleness = 120)
+    public static class StalenessOnly {
+    }
+
+    @ReadRouting(preference = "primary")
+    public static class Primary {
+    }
+
+    private static long getMaxStaleness(ReadPreference readPreference) {
+        return ((TaggableReadPreference) readPreference).getMaxStaleness(TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void keepConnectionStaleness() {
+        ReadConfig merged = ReadConfig.of(PreferenceOnly.class.getAnnotation(ReadRouting.class)).merge(connection);
+        assertEquals("secondary", merged.getReadPreference().getName());
+        assertEquals(90, getMaxStaleness(merged.getReadPreference()));
+        assertEquals(ReadConcern.MAJORITY, merged.getReadConcern());
+    }
+
+    @Test
+    public void applyStalenessOnly() {
+        ReadConfig config = ReadConfig.of(StalenessOnly.class.getAnnotation(ReadRouting.class));
+        assertFalse(config.isEmpty());
+        ReadConfig merged = config.merge(connection);
+        assertEquals("secondaryPreferred", merged.getReadPreference().getName());
+        assertEquals(120, getMaxStaleness(merged.getReadPreference()));
+    }
+
+    @Test
+    public void primaryIgnoresStaleness() {
+        ReadConfig merged = ReadConfig.of(Primary.class.getAnnotation(ReadRouting.class)).merge(connection);
+        assertEquals(ReadPreference.primary(), merged.getReadPreference());
+    }
+
+    @Test
+    public void mergeEmpty() {
+        ReadConfig empty = new ReadConfig();
+        assertTrue(empty.isEmpty());
+        assertEquals("secondaryPreferred", empty.merge(connection).getReadPreference().getName());
+        assertSame(connection, connection.merge(empty));
+        assertSame(connection, connection.merge(null));
+    }
+}
@@ -0,0 +1,84 @@
+package top.newleaf.mongo.scanner;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * 类扫描
+ *
+ * @author chengshx
+ */
+public class ClassScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void nestedJarsHaveTheirOwnKey() {
+        String lib = ClassScanner.getJarKey("jar:file:/app.jar!/BOOT-INF/lib/entity.jar!/top/newleaf/entity");
+        String classes = ClassScanner.getJarKey("jar:file:/app.jar!/BOOT-INF/classes!/top/newleaf/entity");
+        assertEquals("jar:file:/app.jar!/BOOT-INF/lib/entity.jar", lib);
+        assertEquals("jar:file:/app.jar!/BOOT-INF/classes", classes);
+        assertEquals("jar:file:/entity.jar", ClassScanner.getJarKey("jar:file:/entity.jar!/top/newleaf/entity"));
+    }
+
+    @Test
+    public void scanEveryJarAndDirectory() throws Exception {
+        File first = jar("first.jar", "scan/a/A.class", "scan/a/sub/B.class", "other/C.class");
+        File second = jar("second.jar", "scan/a/D.class");
+        File dir = folder.newFolder("classes");
+        new File(dir, "scan/a").mkdirs();
+        new File(dir, "scan/a/E.class").createNewFile();
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{first.toURI().toURL(), second.toURI().toURL(), dir.toURI().toURL()}, null)) {
+            Thread.currentThread().setContextClassLoader(loader);
+            Set<String> classes = new ConcurrentSkipListSet<>();
+            ClassScanner.scan(Collections.singleton("scan.a"), true, classes::add);
+            assertEquals(new HashSet<>(Arrays.asList("scan.a.A", "scan.a.sub.B", "scan.a.D", "scan.a.E")), classes);
+            classes.clear();
+            ClassScanner.scan(Collections.singleton("scan.a"), false, classes::add);
+            assertFalse(classes.contains("scan.a.sub.B"));
+            assertTrue(classes.contains("scan.a.D"));
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+    }
+
+    private File jar(String name, String... entries) throws Exception {
+        File file = folder.newFile(name);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            // 类加载器按目录条目查找包
+            Set<String> dirs = new TreeSet<>();
+            for (String entry : entries) {
+                for (int index = entry.indexOf('/'); index != -1; index = entry.indexOf('/', index + 1)) {
+                    dirs.add(entry.substring(0, index + 1));
+                }
+            }
+            for (String entry : dirs) {
+                out.putNextEntry(new JarEntry(entry));
+                out.closeEntry();
+            }
+            for (String entry : entries) {
+                out.putNextEntry(new JarEntry(entry));
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+}
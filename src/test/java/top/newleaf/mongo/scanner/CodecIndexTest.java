@@ -0,0 +1,78 @@
+package top.newleaf.mongo.scanner;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * codec索引与类路径扫描的配合
+ *
+ * @author chengshx
+ */
+public class CodecIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void scanRootsWithoutIndex() throws Exception {
+        // 有索引的目录只按索引加载，其中未列出的类不会被扫描
+        File indexed = folder.newFolder("indexed");
+        touch(indexed, "idx/a/IndexedCodec.class");
+        touch(indexed, "idx/a/NotListed.class");
+        File index = new File(indexed, CodecIndex.INDEX_LOCATION);
+        index.getParentFile().mkdirs();
+        Files.write(index.toPath(), Arrays.asList("# codecs", "idx.a.IndexedCodec", "other.OtherCodec"), StandardCharsets.UTF_8);
+        File plain = folder.newFolder("plain");
+        touch(plain, "idx/a/HandWrittenCodec.class");
+
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{indexed.toURI().toURL(), plain.toURI().toURL()}, null)) {
+            Thread.currentThread().setContextClassLoader(loader);
+            Set<String> classes = new ConcurrentSkipListSet<>();
+            Set<String> packages = Collections.singleton("idx");
+            Set<String> roots = CodecIndex.scan(packages, true, classes::add);
+            assertEquals(Collections.singleton(indexed.toURI().toURL().toString()), roots);
+            ClassScanner.scan(packages, true, classes::add, roots);
+            assertEquals(new HashSet<>(Arrays.asList("idx.a.IndexedCodec", "idx.a.HandWrittenCodec")), classes);
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+    }
+
+    @Test
+    public void noIndex() throws Exception {
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{folder.getRoot().toURI().toURL()}, null)) {
+            Thread.currentThread().setContextClassLoader(loader);
+            assertTrue(CodecIndex.scan(Collections.singleton("idx"), true, className -> fail(className)).isEmpty());
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+    }
+
+    @Test
+    public void rootOfPackageUrl() {
+        assertEquals("file:/app/classes/", ClassScanner.getRoot("file:/app/classes/top/newleaf/", "top/newleaf"));
+        assertEquals("jar:file:/app.jar!/BOOT-INF/classes!/", ClassScanner.getRoot("jar:file:/app.jar!/BOOT-INF/classes!/top/newleaf", "top/newleaf"));
+    }
+
+    private static void touch(File root, String path) throws Exception {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        assertTrue(file.createNewFile());
+    }
+}
@@ -0,0 +1,164 @@
+package top.newleaf.mongo.transfer;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.types.ObjectId;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 文件导入导出
+ *
+ * @author chengshx
+ */
+public class TransferTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<RawBsonDocument> documents(int count) {
+        List<RawBsonDocument> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BsonDocument document = BsonDocument.parse("{n: " + i + ", name: 'doc" + i + "', time: {$date: 1500000000000}}");
+            document.put("_id", new org.bson.BsonObjectId(new ObjectId()));
+            documents.add(new RawBsonDocument(document, new BsonDocumentCodec()));
+        }
+        return documents;
+    }
+
+    private static TransferConfig config(int batchSize, int bufferSize) {
+        TransferConfig config = new TransferConfig();
+        config.setBatchSize(batchSize);
+        config.setBufferSize(bufferSize);
+        config.setParallelism(3);
+        config.setProgressInterval(0);
+        return config;
+    }
+
+    private Path export(String name, List<RawBsonDocument> documents, TransferConfig config) throws IOException {
+        Path path = folder.getRoot().toPath().resolve(name);
+        try (FileDocumentSink sink = new FileDocumentSink(path, config.getBufferSize())) {
+            TransferProgress progress = new DataExporter(config).export(documents, sink);
+            assertEquals(documents.size(), progress.getDocuments());
+            assertTrue(progress.isFinished());
+        }
+        return path;
+    }
+
+    private List<RawBsonDocument> importFrom(Path path, TransferConfig config) throws IOException {
+        List<RawBsonDocument> imported = Collections.synchronizedList(new ArrayList<>());
+        try (FileDocumentSource source = new FileDocumentSource(path, config.getBufferSize())) {
+            TransferProgress progress = new DataImporter(config).importTo(source, imported::addAll);
+            assertEquals(imported.size(), progress.getDocuments());
+            assertEquals(0, progress.getFailed());
+        }
+        imported.sort(Comparator.comparingInt(document -> document.getInt32("n").getValue()));
+        return imported;
+    }
+
+    @Test
+    public void bsonRoundTrip() throws IOException {
+        List<RawBsonDocument> documents = documents(250);
+        TransferConfig config = config(32, 100);
+        Path path = export("data.bson", documents, config);
+        long size = 0;
+        for (RawBsonDocument document : documents) {
+            size += document.getByteBuffer().remaining();
+        }
+        assertEquals(size, Files.size(path));
+        assertEquals(documents, importFrom(path, config));
+    }
+
+    @Test
+    public void jsonRoundTrip() throws IOException {
+        List<RawBsonDocument> documents = documents(120);
+        TransferConfig config = config(7, 64);
+        Path path = export("data.ndjson", documents, config);
+        assertEquals(120, Files.readAllLines(path).size());
+        assertEquals(documents, importFrom(path, config));
+    }
+
+    @Test
+    public void chunkSizes() throws IOException {
+        Path path = export("data.bson", documents(10), config(1000, 1 << 20));
+        List<Integer> sizes = new ArrayList<>();
+        try (FileDocumentSource source = new FileDocumentSource(path, 16)) {
+            DocumentSource.Chunk chunk;
+            while ((chunk = source.next(4)) != null) {
+                sizes.add(chunk.decode().size());
+            }
+        }
+        assertEquals(Arrays.asList(4, 4, 2), sizes);
+    }
+
+    @Test
+    public void skipBlankLines() throws IOException {
+        Path path = folder.newFile("blank.json").toPath();
+        Files.write(path, Arrays.asList("{\"n\": 1}", "", "  ", "{\"n\": 2}"));
+        try (FileDocumentSource source = new FileDocumentSource(path, 1024)) {
+            assertEquals(2, source.next(10).decode().size());
+            assertNull(source.next(10));
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncatedFile() throws IOException {
+        Path path = export("data.bson", documents(3), config(1000, 1024));
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 5));
+        try (FileDocumentSource source = new FileDocumentSource(path, 1024)) {
+            while (source.next(10) != null) {
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidLength() throws IOException {
+        Path path = folder.newFile("invalid.bson").toPath();
+        Files.write(path, new byte[]{1, 0, 0, 0, 0, 0});
+        try (FileDocumentSource source = new FileDocumentSource(path, 1024)) {
+            source.next(10);
+        }
+    }
+
+    @Test
+    public void targetFailure() throws IOException {
+        Path path = export("data.bson", documents(50), config(1000, 1024));
+        try (FileDocumentSource source = new FileDocumentSource(path, 1024)) {
+            new DataImporter(config(10, 1024)).importTo(source, batch -> {
+                throw new IllegalArgumentException("target");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void countWriteErrors() throws IOException {
+        Path path = export("data.bson", documents(30), config(1000, 1024));
+        try (FileDocumentSource source = new FileDocumentSource(path, 1024)) {
+            TransferProgress progress = new DataImporter(config(10, 1024)).importTo(source, batch -> {
+                BulkWriteError error = new BulkWriteError(11000, "duplicate key", new BsonDocument(), 0);
+                throw new MongoBulkWriteException(BulkWriteResult.unacknowledged(), Collections.singletonList(error), null, new ServerAddress());
+            });
+            assertEquals(3, progress.getFailed());
+            assertEquals(27, progress.getDocuments());
+            assertEquals(3, progress.getBatches());
+        }
+    }
+}